@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2026 The seam-carving contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * A way of measuring how much each pixel of a picture matters, so that
+ * a SeamCarver can remove the pixels that matter least.
+ * 
+ * Pictures are handed to an energy function as packed RGB ints, as by
+ * Color.getRGB(), in a flat array: the pixel at column x and row y lives at
+ * rgb[offset + x * xStep + y * yStep]. This lets a carver pass its buffers
+ * as they are, whether it holds the picture row by row or transposed.
+ * 
+ * The energy of a pixel may depend only on the pixels within radius() rows
+ * and columns of it, and on how far it is from the border of the picture.
+ * After a seam is removed, the carver recalculates the energy of just the
+ * pixels whose neighborhood that changed.
+ * 
+ * @author The seam-carving contributors
+ */
+public interface EnergyFunction {
+    
+    /**
+     * How far the energy of a pixel reaches.
+     * 
+     * @return the largest number of rows or columns between a pixel and any
+     *         other pixel its energy is calculated from.
+     */
+    int radius();
+    
+    /**
+     * Energy of pixel at column x and row y.
+     * 
+     * Note that (0, 0) is the pixel at the top-left corner of the image.
+     * 
+     * @param rgb the colors of the picture
+     * @param offset the index of the pixel at column 0 and row 0
+     * @param xStep the distance between horizontally adjacent pixels
+     * @param yStep the distance between vertically adjacent pixels
+     * @param width the width of the picture
+     * @param height the height of the picture
+     * @param x
+     * @param y
+     * @return the energy of the pixel at column <em>x</em> and row <em>y</em>.
+     */
+    double energy(int[] rgb, int offset, int xStep, int yStep,
+                  int width, int height, int x, int y);
+    
+    /**
+     * Energy of every pixel in a picture stored row by row.
+     * 
+     * The energy of each pixel is written to <em>out</em> at the same index
+     * as its color in <em>rgb</em>. The default implementation calculates one
+     * pixel at a time; implementations should override it with a faster
+     * whole-picture kernel where they can.
+     * 
+     * @param rgb the colors of the picture
+     * @param offset the index of the pixel at column 0 and row 0
+     * @param stride the distance between vertically adjacent pixels
+     * @param width the width of the picture
+     * @param height the height of the picture
+     * @param out the array to write the energy to
+     */
+    default void energy(int[] rgb, int offset, int stride,
+                        int width, int height, double[] out) {
+        for (int y = 0; y < height; y++) {
+            int row = offset + y * stride;
+            for (int x = 0; x < width; x++) {
+                out[row + x] = energy(rgb, offset, 1, stride,
+                                      width, height, x, y);
+            }
+        }
+    }
+}
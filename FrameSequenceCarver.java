@@ -0,0 +1,514 @@
+/*
+ * Copyright (C) 2026 The seam-carving contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+
+/**
+ * A seam carver for sequences of frames of the same size, such as the
+ * frames of a video, that carries what it learns from each frame over to
+ * the next.
+ * 
+ * Frames go through three stages, each on its own thread: decoding, where
+ * the source fills in the colors of the next frame; energy, where a carver
+ * is reset to the frame and calculates its energy; and carving, where the
+ * seams are found and removed and the result goes to the sink. Bounded
+ * queues join the stages, so up to a given number of frames are in flight
+ * at once, and each of those has a color buffer and a carver of its own
+ * that are reused for frame after frame.
+ * 
+ * Consecutive frames are mostly alike, so each seam is searched for only
+ * within a band around the same seam of the frame before, rather than in
+ * the whole frame. This relaxes a small fraction of the pixels a full
+ * search does, and keeps seams from jumping about between frames. Every so
+ * many frames, a key frame is searched in full, so that the seams can move
+ * on when the picture changes for good.
+ * 
+ * @author The seam-carving contributors
+ */
+public class FrameSequenceCarver {
+    
+    /**
+     * Supplies the frames of a sequence, one at a time.
+     */
+    public interface FrameSource {
+        
+        /**
+         * Copy the colors of the given frame into the given array, row by
+         * row, packed as by Color.getRGB().
+         * 
+         * @param frame the index of the frame, counting from 0
+         * @param argb the array to fill, with room for the whole frame
+         * @return {@code false} if there are no more frames.
+         * @throws IOException if the frame cannot be read.
+         */
+        boolean read(int frame, int[] argb) throws IOException;
+    }
+    
+    /**
+     * Receives the carved frames of a sequence, one at a time, in order.
+     */
+    public interface FrameSink {
+        
+        /**
+         * Take the colors of the given frame.
+         * 
+         * @param frame the index of the frame, counting from 0
+         * @param argb the colors of the frame, row by row, packed as by
+         *        Color.getRGB(); the array is reused for the next frame
+         * @param width the width of the frame
+         * @param height the height of the frame
+         * @throws IOException if the frame cannot be written.
+         */
+        void write(int frame, int[] argb, int width, int height)
+                throws IOException;
+    }
+    
+    // A frame in flight: its color buffer and the carver it is carved by
+    private static class Frame {
+        final int[] argb;
+        final SeamCarver carver;
+        int index;
+        
+        Frame(int[] argb, SeamCarver carver) {
+            this.argb = argb;
+            this.carver = carver;
+        }
+    }
+    
+    // Marks the end of the sequence in the queues between stages
+    private static final Frame END = new Frame(null, null);
+    
+    // The default band, key frame interval and number of frames in flight
+    private static final int BAND = 8;
+    private static final int KEY_FRAMES = 30;
+    private static final int DEPTH = 3;
+    
+    // The size of the frames, and the size they are carved to
+    private final int width;
+    private final int height;
+    private final int targetWidth;
+    private final int targetHeight;
+    
+    // The function the energy of each pixel is calculated with
+    private final EnergyFunction energyFunction;
+    
+    // How far a seam may stray from the seam of the frame before, how many
+    // frames there are from one key frame to the next, and how many frames
+    // may be in flight
+    private final int band;
+    private final int keyFrames;
+    private final int depth;
+    
+    // The seams removed from the frame before, in the order they were
+    // removed, or null where there are none yet
+    private final int[][] vertical;
+    private final int[][] horizontal;
+    
+    // The carved frame handed to the sink
+    private final int[] out;
+    
+    // The frames carved so far, and the seams carved with a guess from the
+    // frame before and how far, in all, they moved from their guesses
+    private long frames;
+    private long followed;
+    private double moved;
+    
+    /**
+     * Create a carver for frames of the given size, using the dual-gradient
+     * energy function and the default band, key frame interval and number
+     * of frames in flight.
+     * 
+     * @param width the width of the frames
+     * @param height the height of the frames
+     * @param targetWidth the width to carve the frames to
+     * @param targetHeight the height to carve the frames to
+     * @throws IllegalArgumentException if a size is less than 1.
+     */
+    public FrameSequenceCarver(int width, int height,
+                               int targetWidth, int targetHeight) {
+        this(width, height, targetWidth, targetHeight,
+             new DualGradientEnergy(), BAND, KEY_FRAMES, DEPTH);
+    }
+    
+    /**
+     * Create a carver for frames of the given size.
+     * 
+     * Frames narrower or shorter than their target are widened or lengthened
+     * by seam insertion, which always searches the whole frame.
+     * 
+     * @param width the width of the frames
+     * @param height the height of the frames
+     * @param targetWidth the width to carve the frames to
+     * @param targetHeight the height to carve the frames to
+     * @param energyFunction the energy function
+     * @param band the number of pixels a seam may stray to either side of
+     *        the same seam of the frame before
+     * @param keyFrames the number of frames from one key frame, searched in
+     *        full, to the next; 1 searches every frame in full
+     * @param depth the most frames in flight at once
+     * @throws NullPointerException if the energy function is {@code null}.
+     * @throws IllegalArgumentException if a size is less than 1, if
+     *         <em>band</em> is negative, or if <em>keyFrames</em> or
+     *         <em>depth</em> is less than 1.
+     */
+    public FrameSequenceCarver(int width, int height,
+                               int targetWidth, int targetHeight,
+                               EnergyFunction energyFunction,
+                               int band, int keyFrames, int depth) {
+        
+        // Check for bad input
+        if (energyFunction == null) throw new java.lang.NullPointerException();
+        if (width < 1 || height < 1 || targetWidth < 1 || targetHeight < 1)
+            throw new java.lang.IllegalArgumentException("Invalid size");
+        if (band < 0)
+            throw new java.lang.IllegalArgumentException("Negative band");
+        if (keyFrames < 1)
+            throw new java.lang.IllegalArgumentException("Key frames below 1");
+        if (depth < 1)
+            throw new java.lang.IllegalArgumentException("Depth below 1");
+        
+        this.width = width;
+        this.height = height;
+        this.targetWidth = targetWidth;
+        this.targetHeight = targetHeight;
+        this.energyFunction = energyFunction;
+        this.band = band;
+        this.keyFrames = keyFrames;
+        this.depth = depth;
+        vertical = new int[Math.max(width - targetWidth, 0)][];
+        horizontal = new int[Math.max(height - targetHeight, 0)][];
+        out = new int[targetWidth * targetHeight];
+    }
+    
+    /**
+     * Carve every frame the source supplies, handing each to the sink.
+     * 
+     * The source is read on a decoding thread, and the sink is written on
+     * the calling thread. The seams of the last frame of one sequence guide
+     * the first frame of the next, unless that is a key frame.
+     * 
+     * @param source the frames to carve
+     * @param sink where to put the carved frames
+     * @return the number of frames carved.
+     * @throws NullPointerException if <em>source</em> or <em>sink</em> is
+     *         {@code null}.
+     * @throws IOException if the source or the sink fails.
+     * @throws InterruptedException if interrupted while waiting for a frame.
+     */
+    public long carve(FrameSource source, FrameSink sink)
+            throws IOException, InterruptedException {
+        if (source == null) throw new java.lang.NullPointerException();
+        if (sink == null) throw new java.lang.NullPointerException();
+        
+        // Every frame in flight is in exactly one queue, so the queues
+        // between stages always have room for the end marker too
+        BlockingQueue<Frame> free = new ArrayBlockingQueue<>(depth);
+        BlockingQueue<Frame> decoded = new ArrayBlockingQueue<>(depth + 1);
+        BlockingQueue<Frame> ready = new ArrayBlockingQueue<>(depth + 1);
+        for (int f = 0; f < depth; f++) {
+            SeamCarver carver = new SeamCarver(new int[1], 1, 1, energyFunction);
+            free.add(new Frame(new int[width * height], carver));
+        }
+        
+        ExecutorService stages = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> decoding = stages.submit(() -> {
+                try {
+                    for (int index = 0; ; index++) {
+                        Frame frame = free.take();
+                        if (!source.read(index, frame.argb)) break;
+                        frame.index = index;
+                        decoded.put(frame);
+                    }
+                }
+                finally {
+                    decoded.put(END);
+                }
+                return null;
+            });
+            Future<?> energy = stages.submit(() -> {
+                try {
+                    for (Frame frame = decoded.take(); frame != END;
+                         frame = decoded.take()) {
+                        frame.carver.reset(frame.argb, width, height);
+                        ready.put(frame);
+                    }
+                }
+                finally {
+                    ready.put(END);
+                }
+                return null;
+            });
+            
+            long carved = 0;
+            for (Frame frame = ready.take(); frame != END; frame = ready.take()) {
+                carveFrame(frame.carver);
+                frame.carver.copyPixels(out);
+                sink.write(frame.index, out, targetWidth, targetHeight);
+                free.put(frame);
+                carved++;
+            }
+            
+            // A stage that failed stopped the frames behind it; if the energy
+            // stage saw the end, the decoding stage is done too
+            energy.get();
+            decoding.get();
+            return carved;
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            
+            // Nothing else the stages throw is checked
+            throw (InterruptedException) cause;
+        }
+        finally {
+            stages.shutdownNow();
+        }
+    }
+    
+    /**
+     * Carve one frame to the target size, guided by the seams of the frame
+     * before unless it is a key frame.
+     * 
+     * @param carver the carver, reset to the frame
+     */
+    private void carveFrame(SeamCarver carver) {
+        boolean key = frames % keyFrames == 0;
+        
+        for (int n = 0; n < vertical.length; n++) {
+            int[] guess = vertical[n];
+            int[] seam;
+            if (key || guess == null) seam = carver.findVerticalSeam();
+            else seam = carver.findVerticalSeamNear(guess, band);
+            if (guess != null) follow(guess, seam);
+            carver.removeVerticalSeam(seam);
+            vertical[n] = seam;
+        }
+        while (carver.width() < targetWidth) {
+            carver.insertVerticalSeams(
+                    Math.min(targetWidth - carver.width(), carver.width()));
+        }
+        
+        for (int n = 0; n < horizontal.length; n++) {
+            int[] guess = horizontal[n];
+            int[] seam;
+            if (key || guess == null) seam = carver.findHorizontalSeam();
+            else seam = carver.findHorizontalSeamNear(guess, band);
+            if (guess != null) follow(guess, seam);
+            carver.removeHorizontalSeam(seam);
+            horizontal[n] = seam;
+        }
+        while (carver.height() < targetHeight) {
+            carver.insertHorizontalSeams(
+                    Math.min(targetHeight - carver.height(), carver.height()));
+        }
+        
+        frames++;
+    }
+    
+    /**
+     * Count how far a seam moved from the same seam of the frame before.
+     * 
+     * @param guess the seam of the frame before
+     * @param seam the seam of this frame
+     */
+    private void follow(int[] guess, int[] seam) {
+        long distance = 0;
+        for (int i = 0; i < seam.length; i++) {
+            distance += Math.abs(seam[i] - guess[i]);
+        }
+        moved += (double) distance / seam.length;
+        followed++;
+    }
+    
+    /**
+     * Number of frames carved so far.
+     * 
+     * @return the number of frames carved.
+     */
+    public long frames() {
+        return frames;
+    }
+    
+    /**
+     * How far seams move between frames, on average.
+     * 
+     * For each seam removed from a frame after the first, this is the mean
+     * number of pixels it lies from the same seam of the frame before, key
+     * frames included.
+     * 
+     * @return the mean distance of a seam from its place in the frame
+     *         before, or 0 if no seam has a frame before.
+     */
+    public double jitter() {
+        return followed == 0 ? 0 : moved / followed;
+    }
+    
+    /**
+     * Retarget a sequence of frames.
+     * 
+     * Usage: {@code FrameSequenceCarver input width height output [band]}
+     * 
+     * The input is a directory of frames, all of one size, which are
+     * carved in the order of their names to the given width and height in
+     * pixels. Each frame is written to the output directory under its own
+     * name and format. When all are done, the frames per second and the
+     * jitter of the seams are printed.
+     * 
+     * Bad arguments, and an input that is missing, is not a directory or
+     * holds no frames, are reported before any frame is decoded, and exit
+     * with status 2.
+     * 
+     * @param args the command line arguments
+     * @throws IOException if a frame cannot be read or written.
+     * @throws InterruptedException if interrupted while waiting for a frame.
+     */
+    public static void main(String[] args)
+            throws IOException, InterruptedException {
+        int status = run(args);
+        if (status != 0) System.exit(status);
+    }
+    
+    /**
+     * Retarget a sequence of frames as main() does, without exiting.
+     * 
+     * @param args the command line arguments
+     * @return the exit status: 0 if every frame was carved, and 2 for bad
+     *         arguments.
+     * @throws IOException if a frame cannot be read or written.
+     * @throws InterruptedException if interrupted while waiting for a frame.
+     */
+    static int run(String[] args) throws IOException, InterruptedException {
+        if (args.length < 4 || args.length > 5) return usage(null);
+        
+        // Check for bad input before anything is decoded
+        List<Path> files;
+        int targetWidth;
+        int targetHeight;
+        int band = BAND;
+        try {
+            targetWidth = Integer.parseInt(args[1]);
+            targetHeight = Integer.parseInt(args[2]);
+            if (args.length == 5) band = Integer.parseInt(args[4]);
+            if (targetWidth < 1 || targetHeight < 1)
+                throw new java.lang.IllegalArgumentException("Invalid size");
+            if (band < 0)
+                throw new java.lang.IllegalArgumentException("Negative band");
+            
+            try (Stream<Path> list = Files.list(Paths.get(args[0]))) {
+                files = list.filter(Files::isRegularFile)
+                            .sorted()
+                            .collect(Collectors.toList());
+            }
+            if (files.isEmpty())
+                throw new java.lang.IllegalArgumentException("No frames in " + args[0]);
+        }
+        catch (NoSuchFileException e) {
+            return usage("No such directory: " + e.getFile());
+        }
+        catch (NotDirectoryException e) {
+            return usage("Not a directory: " + e.getFile());
+        }
+        catch (java.lang.IllegalArgumentException e) {
+            return usage(e.getMessage());
+        }
+        Path output = Paths.get(args[3]);
+        Files.createDirectories(output);
+        
+        BufferedImage first = read(files.get(0));
+        int width = first.getWidth();
+        int height = first.getHeight();
+        FrameSequenceCarver carver = new FrameSequenceCarver(
+                width, height, targetWidth, targetHeight,
+                new DualGradientEnergy(), band, KEY_FRAMES, DEPTH);
+        
+        BufferedImage carved = new BufferedImage(targetWidth, targetHeight,
+                                                 BufferedImage.TYPE_INT_RGB);
+        int[] data = ((DataBufferInt) carved.getRaster().getDataBuffer()).getData();
+        
+        long start = System.nanoTime();
+        long n = carver.carve(
+            (frame, argb) -> {
+                if (frame == files.size()) return false;
+                BufferedImage image = frame == 0 ? first : read(files.get(frame));
+                if (image.getWidth() != width || image.getHeight() != height)
+                    throw new IOException("Frame size changed at " + files.get(frame));
+                image.getRGB(0, 0, width, height, argb, 0, width);
+                return true;
+            },
+            (frame, argb, w, h) -> {
+                System.arraycopy(argb, 0, data, 0, w * h);
+                Path file = output.resolve(files.get(frame).getFileName());
+                String name = file.getFileName().toString();
+                String suffix = name.substring(name.lastIndexOf('.') + 1);
+                if (!ImageIO.write(carved, suffix, file.toFile()))
+                    throw new IOException("No writer for " + suffix);
+            });
+        double seconds = (System.nanoTime() - start) / 1e9;
+        
+        System.out.printf(Locale.ROOT,
+                "%d frames, %.2f s: %.2f frames/s, jitter %.3f pixels%n",
+                n, seconds, n / seconds, carver.jitter());
+        return 0;
+    }
+    
+    /**
+     * Print the usage, after what was wrong if given.
+     * 
+     * @param problem what was wrong with the arguments, or {@code null}
+     * @return the exit status for bad arguments, 2.
+     */
+    private static int usage(String problem) {
+        if (problem != null) System.err.println("FrameSequenceCarver: " + problem);
+        System.err.println("Usage: FrameSequenceCarver input width height output [band]");
+        return 2;
+    }
+    
+    /**
+     * Decode a frame.
+     * 
+     * @param file the frame's file
+     * @return the frame.
+     * @throws IOException if the file is not a readable image.
+     */
+    private static BufferedImage read(Path file) throws IOException {
+        BufferedImage image = ImageIO.read(file.toFile());
+        if (image == null) throw new IOException("Unreadable image " + file);
+        return image;
+    }
+}
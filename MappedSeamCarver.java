@@ -0,0 +1,855 @@
+/*
+ * Copyright (C) 2026 The seam-carving contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A seam carver for pictures too large to hold on the heap.
+ * 
+ * The colors and energy of the picture live in memory-mapped files, split
+ * into tiles of whole rows, and the operating system pages them in and out
+ * as they are used. A seam search streams through the picture a row at a
+ * time, keeping only the distances of the previous row on the heap, and
+ * writes the back-pointer of each pixel to a third mapped file as a 2-bit
+ * code. Removing a seam streams through the picture the same way. All told,
+ * the heap holds a few rows, whatever the size of the picture.
+ * 
+ * Seams are found and removed exactly as by SeamCarver, with the same
+ * tie-breaking. Like SeamCarver, the carver works on the transpose of the
+ * picture while removing horizontal seams, so that those also stream row
+ * by row; the files are transposed, tile block by tile block, into a spare
+ * pair of files when the direction changes, and the spare pair is resized
+ * and reused at every later change.
+ * 
+ * The files are created in a given directory, and unmapped and deleted
+ * when the carver is closed.
+ * 
+ * @author The seam-carving contributors
+ */
+public class MappedSeamCarver implements Closeable {
+    
+    /**
+     * Supplies the rows of a picture, one at a time.
+     */
+    public interface RowSource {
+        
+        /**
+         * Copy the colors of row y into the given array, packed as by
+         * Color.getRGB().
+         * 
+         * @param y the row to read
+         * @param argb the array to fill, one element per column
+         */
+        void read(int y, int[] argb);
+    }
+    
+    /**
+     * Receives the rows of a picture, one at a time.
+     */
+    public interface RowSink {
+        
+        /**
+         * Take the colors of row y.
+         * 
+         * @param y the row being written
+         * @param argb the colors of the row, packed as by Color.getRGB();
+         *        only the first width elements belong to the row, and the
+         *        array is reused for the next row
+         */
+        void write(int y, int[] argb);
+    }
+    
+    // The default size of a tile
+    private static final int TILE_BYTES = 1 << 26;
+    
+    // The side of the square blocks the files are transposed in
+    private static final int BLOCK = 512;
+    
+    // The function the energy of each pixel is calculated with
+    private final EnergyFunction energyFunction;
+    
+    // Where the files are created, and the most bytes mapped per tile
+    private final Path directory;
+    private final int tileBytes;
+    
+    // The colors, the energy, and the 2-bit code of each pixel's parent:
+    // 0 for the parent to the left, 1 for the one above, 2 for the right
+    private Matrix color;
+    private Matrix energy;
+    private Matrix edges;
+    
+    // The files the colors and energy are transposed into, or null before
+    // the first change of direction
+    private Matrix spareColor;
+    private Matrix spareEnergy;
+    
+    // The current width and height
+    private int w;
+    private int h;
+    
+    // True if the files hold the transpose of the picture
+    private boolean transposed;
+    
+    // Rows of scratch space on the heap
+    private double[] distUp;
+    private double[] distRow;
+    private double[] energyRow;
+    private int[] colorRow;
+    private byte[] codeRow;
+    
+    // The rows around the one whose energy is calculated, and the blocks a
+    // transpose goes through, or null before the first change of direction
+    private Window window;
+    private int[] blockInts;
+    private double[] blockDoubles;
+    
+    /**
+     * Create a carver for the given image, using the dual-gradient energy
+     * function and the default tile size.
+     * 
+     * @param image the given image
+     * @param directory the directory to create the files in
+     * @throws NullPointerException if any argument is {@code null}.
+     * @throws IOException if the files cannot be created.
+     */
+    public MappedSeamCarver(BufferedImage image, Path directory)
+            throws IOException {
+        this(image.getWidth(), image.getHeight(),
+             (y, argb) -> image.getRGB(0, y, image.getWidth(), 1, argb, 0,
+                                       image.getWidth()),
+             directory, new DualGradientEnergy(), TILE_BYTES);
+    }
+    
+    /**
+     * Create a carver for the picture the given source supplies.
+     * 
+     * The rows are read once, in order, and the energy is calculated as
+     * they stream into the files.
+     * 
+     * @param width the width of the picture
+     * @param height the height of the picture
+     * @param source the source of the rows of the picture
+     * @param directory the directory to create the files in
+     * @param energyFunction the energy function
+     * @param tileBytes the most bytes to map at once; a tile always holds
+     *        at least one row
+     * @throws NullPointerException if any argument is {@code null}.
+     * @throws IllegalArgumentException if <em>width</em> or <em>height</em>
+     *         is less than 1, or if <em>tileBytes</em> is not positive.
+     * @throws IOException if the files cannot be created.
+     */
+    public MappedSeamCarver(int width, int height, RowSource source,
+                            Path directory, EnergyFunction energyFunction,
+                            int tileBytes) throws IOException {
+        if (source == null || directory == null || energyFunction == null)
+            throw new java.lang.NullPointerException();
+        if (width < 1 || height < 1)
+            throw new java.lang.IllegalArgumentException("Empty picture");
+        if (tileBytes < 1)
+            throw new java.lang.IllegalArgumentException("Invalid tile size");
+        
+        this.energyFunction = energyFunction;
+        this.directory = directory;
+        this.tileBytes = tileBytes;
+        w = width;
+        h = height;
+        
+        int longest = Math.max(w, h);
+        distUp = new double[longest];
+        distRow = new double[longest];
+        energyRow = new double[longest];
+        colorRow = new int[longest];
+        codeRow = new byte[(longest + 3) / 4];
+        window = new Window(longest);
+        
+        try {
+            color = new Matrix(directory, "color", h, w * 4L, tileBytes);
+            energy = new Matrix(directory, "energy", h, w * 8L, tileBytes);
+            
+            for (int i = 0; i < h; i++) {
+                source.read(i, colorRow);
+                color.put(i, 0, colorRow, 0, w);
+            }
+            
+            // Calculate the energy a row at a time, sliding a window of rows
+            // across the picture
+            window.reset();
+            for (int i = 0; i < h; i++) {
+                window.moveTo(i);
+                for (int j = 0; j < w; j++) energyRow[j] = window.energy(i, j);
+                energy.put(i, 0, energyRow, 0, w);
+            }
+        }
+        catch (Throwable e) {
+            // Nobody gets a carver to close, so delete its files here
+            try {
+                close();
+            }
+            catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Width of current picture.
+     * 
+     * @return the width of the current picture.
+     */
+    public int width() {
+        return w;
+    }
+    
+    /**
+     * Height of current picture.
+     * 
+     * @return the height of the current picture.
+     */
+    public int height() {
+        return h;
+    }
+    
+    /**
+     * Energy of pixel at column x and row y.
+     * 
+     * @param x
+     * @param y
+     * @return the energy of the pixel at column <em>x</em> and row <em>y</em>.
+     * @throws IndexOutOfBoundsException if <em>x</em> or <em>y</em> is
+     *         outside the picture.
+     */
+    public double energy(int x, int y) {
+        if (x >= width() || y >= height() || x < 0 || y < 0)
+            throw new java.lang.IndexOutOfBoundsException();
+        
+        if (transposed) return energy.getDouble(x, y);
+        return energy.getDouble(y, x);
+    }
+    
+    /**
+     * Stream the current picture to the given sink, row by row.
+     * 
+     * @param sink the sink to write the rows to
+     * @throws NullPointerException if <em>sink</em> is {@code null}.
+     */
+    public void writeRows(RowSink sink) {
+        if (sink == null) throw new java.lang.NullPointerException();
+        
+        orient(false);
+        for (int i = 0; i < h; i++) {
+            color.get(i, 0, colorRow, 0, w);
+            sink.write(i, colorRow);
+        }
+    }
+    
+    /**
+     * Current picture, as an image.
+     * 
+     * @return the current picture, as a new image of type
+     *         {@code TYPE_INT_ARGB} if any pixel is not fully opaque, and of
+     *         type {@code TYPE_INT_RGB} otherwise.
+     */
+    public BufferedImage toBufferedImage() {
+        int[] pixels = new int[SeamCarver.area(w, h)];
+        writeRows((y, argb) -> System.arraycopy(argb, 0, pixels, y * w, w));
+        return SeamCarver.toImage(pixels, w, h);
+    }
+    
+    /**
+     * Sequence of indices for horizontal seam.
+     * 
+     * @return the sequence of indices for the horizontal seam.
+     * @see SeamCarver#findHorizontalSeam()
+     */
+    public int[] findHorizontalSeam() {
+        orient(true);
+        return findSeam();
+    }
+    
+    /**
+     * Sequence of indices for vertical seam.
+     * 
+     * @return the sequence of indices for the vertical seam.
+     * @see SeamCarver#findVerticalSeam()
+     */
+    public int[] findVerticalSeam() {
+        orient(false);
+        return findSeam();
+    }
+    
+    /**
+     * Find the shortest path from the top to the bottom of the files, in
+     * their current layout, streaming through the rows.
+     * 
+     * @return the column of the path in each row.
+     */
+    private int[] findSeam() {
+        int rows = rows();
+        int cols = cols();
+        int codeBytes = (cols + 3) / 4;
+        
+        // The top row costs only its own energy
+        energy.get(0, 0, distUp, 0, cols);
+        
+        for (int i = 1; i < rows; i++) {
+            energy.get(i, 0, energyRow, 0, cols);
+            relaxRow(cols);
+            edges.put(i, 0, codeRow, 0, codeBytes);
+            
+            double[] d = distUp;
+            distUp = distRow;
+            distRow = d;
+        }
+        
+        // Find the end of the shortest path in the bottom row
+        int edgeToSink = cols - 1;
+        double distToSink = distUp[edgeToSink];
+        for (int j = cols - 2; j >= 0; j--) {
+            if (distToSink > distUp[j]) {
+                distToSink = distUp[j];
+                edgeToSink = j;
+            }
+        }
+        
+        // Populate seam[] with the shortest path
+        int[] seam = new int[rows];
+        seam[rows - 1] = edgeToSink;
+        
+        for (int i = rows - 1; i > 0; i--) {
+            int s = seam[i];
+            int code = (edges.getByte(i, s >> 2) >> ((s & 3) << 1)) & 3;
+            seam[i - 1] = s + code - 1;
+        }
+        
+        return seam;
+    }
+    
+    /**
+     * Relax a row from the distances of the row above it, with the same
+     * tie-breaking as SeamCarver: the parent to the right, then the one
+     * above, then the one to the left.
+     * 
+     * Reads energyRow and distUp; writes distRow and codeRow.
+     * 
+     * @param cols the number of columns in the row
+     */
+    private void relaxRow(int cols) {
+        Arrays.fill(codeRow, 0, (cols + 3) / 4, (byte) 0);
+        for (int j = 0; j < cols; j++) {
+            double e = energyRow[j];
+            double best = Double.POSITIVE_INFINITY;
+            int edge = 0;
+            if (j + 1 < cols) {
+                best = distUp[j + 1] + e;
+                edge = 1;
+            }
+            if (best > distUp[j] + e) {
+                best = distUp[j] + e;
+                edge = 0;
+            }
+            if (j > 0 && best > distUp[j - 1] + e) {
+                best = distUp[j - 1] + e;
+                edge = -1;
+            }
+            distRow[j] = best;
+            codeRow[j >> 2] |= (edge + 1) << ((j & 3) << 1);
+        }
+    }
+    
+    /**
+     * Remove horizontal seam from current picture.
+     * 
+     * @param seam the given seam.
+     * @throws NullPointerException if the given <em>seam</em> is {@code null}.
+     * @throws IllegalArgumentException if the given <em>seam</em> does not
+     *         match the picture width, if an index in the given <em>seam</em>
+     *         is negative or is taller than the picture, or if two adjacent
+     *         entries in the given <em>seam</em> differ by more than 1.
+     */
+    public void removeHorizontalSeam(int[] seam) {
+        if (height() <= 1)
+            throw new java.lang.IllegalArgumentException("Picture too short");
+        validate(seam, width(), height());
+        
+        orient(true);
+        removeSeam(seam);
+    }
+    
+    /**
+     * Remove vertical seam from current picture.
+     * 
+     * @param seam the given seam.
+     * @throws NullPointerException if the given <em>seam</em> is {@code null}.
+     * @throws IllegalArgumentException if the given <em>seam</em> does not
+     *         match the picture height, if an index in the given <em>seam</em>
+     *         is negative or is wider than the picture, or if two adjacent
+     *         entries in the given <em>seam</em> differ by more than 1.
+     */
+    public void removeVerticalSeam(int[] seam) {
+        if (width() <= 1)
+            throw new java.lang.IllegalArgumentException("Picture too narrow");
+        validate(seam, height(), width());
+        
+        orient(false);
+        removeSeam(seam);
+    }
+    
+    /**
+     * Check a seam against the picture.
+     * 
+     * @param seam the given seam
+     * @param length the length the seam must have
+     * @param bound the bound its indices must stay below
+     */
+    private static void validate(int[] seam, int length, int bound) {
+        if (seam == null) throw new java.lang.NullPointerException();
+        if (seam.length != length)
+            throw new java.lang.IllegalArgumentException("Invalid seam length");
+        
+        int last = seam[0];
+        for (int s: seam) {
+            if (s >= bound || s < 0)
+                throw new java.lang.IllegalArgumentException("Index out of bounds");
+            if (Math.abs(s - last) > 1)
+                throw new java.lang.IllegalArgumentException("Index not adjacent");
+            last = s;
+        }
+    }
+    
+    /**
+     * Remove a seam running down the rows of the files, then recalculate the
+     * energy of the pixels near it, as SeamCarver does.
+     * 
+     * @param seam the column of the seam in each row
+     */
+    private void removeSeam(int[] seam) {
+        int rows = rows();
+        int cols = cols();
+        
+        // Close the gap in each row
+        for (int i = 0; i < rows; i++) {
+            int s = seam[i];
+            color.get(i, s + 1, colorRow, 0, cols - s - 1);
+            color.put(i, s, colorRow, 0, cols - s - 1);
+            energy.get(i, s + 1, energyRow, 0, cols - s - 1);
+            energy.put(i, s, energyRow, 0, cols - s - 1);
+        }
+        
+        if (transposed) h--;
+        else w--;
+        cols--;
+        
+        // Recalculate the energy near the seam, sliding a window of rows
+        // down the picture
+        int r = Math.max(energyFunction.radius(), 1);
+        window.reset();
+        for (int i = 0; i < rows; i++) {
+            int lo = seam[i];
+            int hi = seam[i];
+            for (int k = Math.max(i - r, 0); k <= Math.min(i + r, rows - 1); k++) {
+                lo = Math.min(lo, seam[k]);
+                hi = Math.max(hi, seam[k]);
+            }
+            lo = Math.max(lo - r, 0);
+            hi = Math.min(hi + r - 1, cols - 1);
+            
+            window.moveTo(i);
+            for (int j = lo; j <= hi; j++) energyRow[j - lo] = window.energy(i, j);
+            energy.put(i, lo, energyRow, 0, hi - lo + 1);
+        }
+    }
+    
+    /**
+     * Lay the files out so that seams in the given direction run down their
+     * rows, transposing them if they are currently the other way round.
+     * 
+     * @param horizontal {@code true} to work on horizontal seams,
+     *        {@code false} to work on vertical seams
+     */
+    private void orient(boolean horizontal) {
+        try {
+            boolean flip = transposed != horizontal;
+            if (flip) {
+                int rows = rows();
+                int cols = cols();
+                if (spareColor == null)
+                    spareColor = new Matrix(directory, "color", cols, rows * 4L, tileBytes);
+                else spareColor.reshape(cols, rows * 4L);
+                if (spareEnergy == null)
+                    spareEnergy = new Matrix(directory, "energy", cols, rows * 8L, tileBytes);
+                else spareEnergy.reshape(cols, rows * 8L);
+                Matrix c = spareColor;
+                Matrix e = spareEnergy;
+                
+                if (blockInts == null) {
+                    blockInts = new int[BLOCK * BLOCK];
+                    blockDoubles = new double[BLOCK * BLOCK];
+                }
+                int[] ints = blockInts;
+                double[] doubles = blockDoubles;
+                for (int i0 = 0; i0 < rows; i0 += BLOCK) {
+                    int bi = Math.min(BLOCK, rows - i0);
+                    for (int j0 = 0; j0 < cols; j0 += BLOCK) {
+                        int bj = Math.min(BLOCK, cols - j0);
+                        
+                        // Read the block row by row, transposing it in place
+                        for (int i = 0; i < bi; i++) {
+                            color.get(i0 + i, j0, colorRow, 0, bj);
+                            energy.get(i0 + i, j0, energyRow, 0, bj);
+                            for (int j = 0; j < bj; j++) {
+                                ints[j * bi + i] = colorRow[j];
+                                doubles[j * bi + i] = energyRow[j];
+                            }
+                        }
+                        
+                        for (int j = 0; j < bj; j++) {
+                            c.put(j0 + j, i0, ints, j * bi, bi);
+                            e.put(j0 + j, i0, doubles, j * bi, bi);
+                        }
+                    }
+                }
+                
+                spareColor = color;
+                spareEnergy = energy;
+                color = c;
+                energy = e;
+                transposed = horizontal;
+            }
+            if (edges == null) {
+                edges = new Matrix(directory, "edges", rows(),
+                                   (cols() + 3) / 4, tileBytes);
+            }
+            else if (flip) {
+                edges.reshape(rows(), (cols() + 3) / 4);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * The number of rows in the current layout of the files.
+     * 
+     * @return the picture height, or its width while transposed.
+     */
+    private int rows() {
+        return transposed ? w : h;
+    }
+    
+    /**
+     * The number of columns in the current layout of the files.
+     * 
+     * @return the picture width, or its height while transposed.
+     */
+    private int cols() {
+        return transposed ? h : w;
+    }
+    
+    /**
+     * Unmap and delete the files. The carver must not be used afterwards.
+     * 
+     * @throws IOException if a file cannot be deleted; the others are
+     *         deleted all the same.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Matrix m: new Matrix[] {color, energy, edges, spareColor, spareEnergy}) {
+            if (m == null) continue;
+            try {
+                m.close();
+            }
+            catch (IOException e) {
+                if (failure == null) failure = e;
+                else failure.addSuppressed(e);
+            }
+        }
+        color = null;
+        energy = null;
+        edges = null;
+        spareColor = null;
+        spareEnergy = null;
+        if (failure != null) throw failure;
+    }
+    
+    /**
+     * The colors of the rows within the energy function's radius of one row,
+     * held on the heap while that row's energy is calculated.
+     * 
+     * One window serves the carver for its whole life, so it is sized for
+     * the longest row the picture ever has, and reset whenever the files
+     * may have changed under it.
+     */
+    private class Window {
+        
+        // The radius, and the rows held: rows first through first + 2r
+        private final int r = Math.max(energyFunction.radius(), 1);
+        private final int span = 2 * r + 1;
+        private final int[] rgb;
+        private int first;
+        private boolean loaded;
+        
+        /**
+         * Create a window for rows of up to the given length.
+         * 
+         * @param longest the longest row the window will hold
+         */
+        Window(int longest) {
+            rgb = new int[span * longest];
+        }
+        
+        /**
+         * Forget the rows held, so that the next move reads them all again.
+         */
+        void reset() {
+            loaded = false;
+        }
+        
+        /**
+         * Hold the rows around row i, reading only those not held already.
+         * 
+         * @param i the row in the current layout
+         */
+        void moveTo(int i) {
+            int cols = cols();
+            int from = i - r;
+            int shift = from - first;
+            int keep = (loaded && shift >= 0 && shift < span) ? span - shift : 0;
+            if (keep > 0) {
+                System.arraycopy(rgb, shift * cols, rgb, 0, keep * cols);
+            }
+            for (int k = keep; k < span; k++) {
+                int row = from + k;
+                if (row >= 0 && row < rows()) color.get(row, 0, rgb, k * cols, cols);
+            }
+            first = from;
+            loaded = true;
+        }
+        
+        /**
+         * Energy of the pixel at row i and column j of the current layout,
+         * where row i is the one the window was last moved to.
+         * 
+         * @param i the row of the pixel
+         * @param j the column of the pixel
+         * @return the energy of the pixel.
+         */
+        double energy(int i, int j) {
+            int cols = cols();
+            int offset = -first * cols;
+            if (transposed)
+                return energyFunction.energy(rgb, offset, cols, 1, w, h, i, j);
+            return energyFunction.energy(rgb, offset, 1, cols, w, h, j, i);
+        }
+    }
+    
+    /**
+     * A file of equally long rows, mapped into memory in tiles of whole rows.
+     * Values are stored in native byte order.
+     * 
+     * The tiles are unmapped as soon as the file is reshaped or closed, so
+     * a closed or reshaped matrix never pins the pages of its old mappings.
+     * No view of a tile may outlive the call that made it.
+     */
+    private static final class Matrix implements Closeable {
+        
+        // Unmaps a buffer at once, or null if the platform offers no way to;
+        // mappings are then let go when their buffers are collected
+        private static final MethodHandle UNMAP = unmapper();
+        
+        // True once the platform has refused to unmap a buffer, after which
+        // no more are tried and all are left to be collected
+        private static volatile boolean unmapRefused;
+        
+        private final Path file;
+        private final int tileBytes;
+        private MappedByteBuffer[] tiles = new MappedByteBuffer[0];
+        private long rowBytes;
+        private int rowsPerTile;
+        
+        /**
+         * Create and map a new file.
+         * 
+         * @param directory the directory to create the file in
+         * @param name the prefix of the file name
+         * @param rows the number of rows
+         * @param rowBytes the size of a row
+         * @param tileBytes the most bytes to map at once
+         * @throws IOException if the file cannot be created or mapped.
+         */
+        Matrix(Path directory, String name, int rows, long rowBytes,
+               int tileBytes) throws IOException {
+            this.tileBytes = tileBytes;
+            file = Files.createTempFile(directory, name, ".tile");
+            try {
+                reshape(rows, rowBytes);
+            }
+            catch (Throwable e) {
+                try {
+                    close();
+                }
+                catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+        }
+        
+        /**
+         * Give the file a new shape, growing or truncating it to fit, and map
+         * it again. The old contents are left in place, so they only keep
+         * their meaning when the rows keep their size.
+         * 
+         * @param rows the number of rows
+         * @param rowBytes the size of a row
+         * @throws IOException if the file cannot be resized or mapped.
+         */
+        void reshape(int rows, long rowBytes) throws IOException {
+            if (rowBytes > Integer.MAX_VALUE)
+                throw new IOException("Row too long to map");
+            
+            unmap();
+            this.rowBytes = Math.max(rowBytes, 1);
+            rowsPerTile = (int) Math.max(1, tileBytes / this.rowBytes);
+            tiles = new MappedByteBuffer[(rows + rowsPerTile - 1) / rowsPerTile];
+            
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+                raf.setLength(rows * this.rowBytes);
+                FileChannel channel = raf.getChannel();
+                for (int t = 0; t < tiles.length; t++) {
+                    int n = Math.min(rowsPerTile, rows - t * rowsPerTile);
+                    tiles[t] = channel.map(FileChannel.MapMode.READ_WRITE,
+                                           t * rowsPerTile * this.rowBytes,
+                                           n * this.rowBytes);
+                }
+            }
+        }
+        /**
+         * A view of the tile holding the given row, positioned at the given
+         * byte of the row.
+         * 
+         * @param row the row
+         * @param at the offset within the row, in bytes
+         * @return the view.
+         */
+        private ByteBuffer at(int row, long at) {
+            ByteBuffer b = tiles[row / rowsPerTile].duplicate();
+            b.order(ByteOrder.nativeOrder());
+            b.position((int) ((row % rowsPerTile) * rowBytes + at));
+            return b;
+        }
+        
+        void get(int row, int col, int[] dst, int off, int len) {
+            at(row, col * 4L).asIntBuffer().get(dst, off, len);
+        }
+        
+        void put(int row, int col, int[] src, int off, int len) {
+            at(row, col * 4L).asIntBuffer().put(src, off, len);
+        }
+        
+        void get(int row, int col, double[] dst, int off, int len) {
+            at(row, col * 8L).asDoubleBuffer().get(dst, off, len);
+        }
+        
+        void put(int row, int col, double[] src, int off, int len) {
+            at(row, col * 8L).asDoubleBuffer().put(src, off, len);
+        }
+        
+        void put(int row, int col, byte[] src, int off, int len) {
+            at(row, col).put(src, off, len);
+        }
+        
+        double getDouble(int row, int col) {
+            return at(row, col * 8L).getDouble();
+        }
+        
+        byte getByte(int row, int col) {
+            return at(row, col).get();
+        }
+        
+        /**
+         * Unmap the tiles, leaving the matrix without any.
+         */
+        private void unmap() {
+            MappedByteBuffer[] old = tiles;
+            tiles = new MappedByteBuffer[0];
+            if (UNMAP == null || unmapRefused) return;
+            for (MappedByteBuffer tile: old) {
+                if (tile == null) continue;
+                try {
+                    UNMAP.invokeExact((ByteBuffer) tile);
+                }
+                catch (Throwable e) {
+                    // Every tile is mapped directly, so only a platform that
+                    // has changed its mind refuses; the tiles are then only
+                    // unmapped once collected, as they are without UNMAP
+                    unmapRefused = true;
+                    return;
+                }
+            }
+        }
+        
+        /**
+         * Unmap the tiles and delete the file.
+         * 
+         * @throws IOException if the file cannot be deleted.
+         */
+        @Override
+        public void close() throws IOException {
+            unmap();
+            Files.deleteIfExists(file);
+        }
+        
+        /**
+         * Find the platform's way to unmap a buffer at once.
+         * 
+         * @return a handle taking the buffer to unmap, or {@code null} if
+         *         there is none.
+         */
+        private static MethodHandle unmapper() {
+            try {
+                Class<?> unsafe = Class.forName("sun.misc.Unsafe");
+                Field instance = unsafe.getDeclaredField("theUnsafe");
+                instance.setAccessible(true);
+                return MethodHandles.lookup()
+                        .findVirtual(unsafe, "invokeCleaner",
+                                     MethodType.methodType(void.class, ByteBuffer.class))
+                        .bindTo(instance.get(null));
+            }
+            catch (ReflectiveOperationException | RuntimeException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2026 The seam-carving contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+
+/**
+ * Measures how often searches in reduced precision choose a different seam
+ * than searches in double precision.
+ * 
+ * Each image is carved by one carver per precision, every carver removing
+ * the seam the double-precision carver chose, so that all of them search
+ * the same picture at every step. A step counts as different when a
+ * reduced-precision seam leaves the reference seam anywhere; its excess is
+ * how much more energy it crosses than the reference seam does.
+ * 
+ * @author The seam-carving contributors
+ */
+public class PrecisionValidation {
+    
+    /**
+     * Compare the seams of each precision on a directory of images.
+     * 
+     * Usage: {@code PrecisionValidation [directory [seams]]}
+     * 
+     * The directory defaults to img, and each image is narrowed and then
+     * shortened by the given number of seams, by default a tenth of its
+     * width and of its height. One line is printed per image, direction and
+     * reduced precision, then one line per reduced precision over all.
+     * 
+     * @param args the command line arguments
+     * @throws IOException if the directory or an image cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length > 2) {
+            System.err.println("Usage: PrecisionValidation [directory [seams]]");
+            System.exit(2);
+        }
+        Path directory = Paths.get(args.length > 0 ? args[0] : "img");
+        int seams = args.length > 1 ? Integer.parseInt(args[1]) : -1;
+        
+        List<Path> images;
+        try (Stream<Path> files = Files.list(directory)) {
+            images = files.filter(PrecisionValidation::isImage)
+                          .sorted()
+                          .collect(Collectors.toList());
+        }
+        
+        SeamCarver.Precision[] reduced = {
+            SeamCarver.Precision.FLOAT, SeamCarver.Precision.FIXED
+        };
+        long[] steps = new long[reduced.length];
+        long[] differ = new long[reduced.length];
+        double[] excess = new double[reduced.length];
+        
+        System.out.printf(Locale.ROOT, "%-24s %-10s %-9s %7s %8s %12s %12s%n",
+                "image", "direction", "precision", "seams", "differ",
+                "excess", "ms/search");
+        for (Path image: images) {
+            BufferedImage picture = ImageIO.read(image.toFile());
+            if (picture == null) continue;
+            
+            for (boolean vertical: new boolean[] {true, false}) {
+                int size = vertical ? picture.getWidth() : picture.getHeight();
+                int k = seams < 0 ? size / 10 : Math.min(seams, size - 1);
+                
+                SeamCarver reference = new SeamCarver(picture);
+                SeamCarver[] carvers = new SeamCarver[reduced.length];
+                for (int p = 0; p < reduced.length; p++) {
+                    carvers[p] = new SeamCarver(picture);
+                    carvers[p].setPrecision(reduced[p]);
+                }
+                
+                int[] different = new int[reduced.length];
+                double[] extra = new double[reduced.length];
+                double referenceCost = 0;
+                long referenceNanos = 0;
+                long[] nanos = new long[reduced.length];
+                
+                for (int n = 0; n < k; n++) {
+                    long t0 = System.nanoTime();
+                    int[] seam = find(reference, vertical);
+                    referenceNanos += System.nanoTime() - t0;
+                    double cost = cost(reference, vertical, seam);
+                    referenceCost += cost;
+                    
+                    for (int p = 0; p < reduced.length; p++) {
+                        t0 = System.nanoTime();
+                        int[] other = find(carvers[p], vertical);
+                        nanos[p] += System.nanoTime() - t0;
+                        if (!Arrays.equals(seam, other)) {
+                            different[p]++;
+                            extra[p] += cost(reference, vertical, other) - cost;
+                        }
+                    }
+                    
+                    // Every carver goes on from the same picture
+                    remove(reference, vertical, seam);
+                    for (SeamCarver carver: carvers) remove(carver, vertical, seam);
+                }
+                
+                String name = image.getFileName().toString();
+                String direction = vertical ? "vertical" : "horizontal";
+                System.out.printf(Locale.ROOT, "%-24s %-10s %-9s %7d %7s %12s %12.2f%n",
+                        name, direction, SeamCarver.Precision.DOUBLE, k,
+                        "-", "-", k == 0 ? 0 : referenceNanos / 1e6 / k);
+                for (int p = 0; p < reduced.length; p++) {
+                    System.out.printf(Locale.ROOT,
+                            "%-24s %-10s %-9s %7d %7.2f%% %11.4f%% %12.2f%n",
+                            name, direction, reduced[p], k,
+                            k == 0 ? 0 : 100.0 * different[p] / k,
+                            referenceCost == 0 ? 0 : 100 * extra[p] / referenceCost,
+                            k == 0 ? 0 : nanos[p] / 1e6 / k);
+                    steps[p] += k;
+                    differ[p] += different[p];
+                    excess[p] += referenceCost == 0 ? 0 : extra[p] / referenceCost;
+                }
+            }
+        }
+        
+        int runs = 2 * images.size();
+        for (int p = 0; p < reduced.length; p++) {
+            System.out.printf(Locale.ROOT,
+                    "%s: %d of %d seams differ (%.2f%%), mean excess %.4f%%%n",
+                    reduced[p], differ[p], steps[p],
+                    steps[p] == 0 ? 0 : 100.0 * differ[p] / steps[p],
+                    runs == 0 ? 0 : 100 * excess[p] / runs);
+        }
+    }
+    
+    /**
+     * Whether a file looks like an image ImageIO can read.
+     * 
+     * @param file the file
+     * @return {@code true} if its suffix is one ImageIO reads.
+     */
+    private static boolean isImage(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if (dot < 0 || !Files.isRegularFile(file)) return false;
+        String suffix = name.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return Arrays.asList(ImageIO.getReaderFileSuffixes()).contains(suffix);
+    }
+    
+    /**
+     * Find the next seam in the given direction.
+     * 
+     * @param carver the carver to search
+     * @param vertical {@code true} for a vertical seam
+     * @return the seam.
+     */
+    private static int[] find(SeamCarver carver, boolean vertical) {
+        return vertical ? carver.findVerticalSeam() : carver.findHorizontalSeam();
+    }
+    
+    /**
+     * The total energy of the pixels along a seam in the given direction.
+     * 
+     * @param carver the carver whose energy to add up
+     * @param vertical {@code true} for a vertical seam
+     * @param seam the seam
+     * @return the seam's cost.
+     */
+    private static double cost(SeamCarver carver, boolean vertical, int[] seam) {
+        return vertical ? carver.verticalSeamCost(seam)
+                        : carver.horizontalSeamCost(seam);
+    }
+    
+    /**
+     * Remove a seam in the given direction.
+     * 
+     * @param carver the carver to remove the seam from
+     * @param vertical {@code true} for a vertical seam
+     * @param seam the seam
+     */
+    private static void remove(SeamCarver carver, boolean vertical, int[] seam) {
+        if (vertical) carver.removeVerticalSeam(seam);
+        else carver.removeHorizontalSeam(seam);
+    }
+}
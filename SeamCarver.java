@@ -1,10 +1,40 @@
 
 import edu.princeton.cs.algs4.Picture;
 import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
 
 /*
  * Copyright (C) 2017 Michael <GrubenM@GMail.com>
+ * Copyright (C) 2026 The seam-carving contributors
  *
  * This program is free software: you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -23,573 +53,3426 @@ import java.util.Arrays;
 /**
  *
  * @author Michael <GrubenM@GMail.com>
+ * @author The seam-carving contributors
  */
 public class SeamCarver {
     
-    // The representation of the given image
-    private int[][] color;
+    // The representation of the given image, stored in one flat buffer.
+    // Normally the buffer is row-major: the pixel at column x and row y lives
+    // at color[y * stride + x]. While the carver is working on horizontal
+    // seams the buffer holds the transpose instead, and that pixel lives at
+    // color[x * stride + y]. Removing a seam compacts this buffer in place,
+    // so the stride does not follow the shrinking width or height; inserting
+    // seams moves the picture to a larger buffer.
+    private int[] color;
     
-    // The energy of each pixel in the image
-    private double[][] energy;
+    // The energy of each pixel in the image, laid out exactly like color
+    private double[] energy;
     
-    // Arrays and sinks for finding the shortest path through the image energy
-    private double[][] distTo;
-    private double distToSink;
-    private int[][] edgeTo;
-    private int edgeToSink;
+    // The function the energy of each pixel is calculated with
+    private final EnergyFunction energyFunction;
+    
+    // The distance between the starts of two adjacent rows in color and energy
+    private int stride;
+    
+    // Buffers the picture is transposed into when the orientation changes
+    private int[] spareColor;
+    private double[] spareEnergy;
+    
+    // Arrays for finding the shortest path through the image energy, laid
+    // out exactly like energy. edgeTo holds the offset (-1, 0 or +1) from a
+    // pixel's index to the index of its parent in the previous row.
+    private double[] distTo;
+    private byte[] edgeTo;
     
     // The current width and height
     private int w;
     private int h;
     
-    // False if finding or removing a vertical seam,
-    // true if finding or removing a horizontal seam.
+    // False if color and energy hold the picture as is, so that vertical
+    // seams run down their rows; true if they hold its transpose, so that
+    // horizontal seams do.
     private boolean transposed;
     
+    // The pool seams are searched on in parallel, or null to search serially;
+    // and true if the carver made the pool itself, and so shuts it down
+    private ForkJoinPool pool;
+    private boolean ownsPool;
+    
+    // True if distTo and edgeTo are kept up to date across seam removals,
+    // and whether they currently hold every shortest path in the picture
+    private boolean incremental;
+    private boolean pathsValid;
+    
+    // True if searches keep only two rows of distances, in costUp and
+    // costRow, and pack the parent of each pixel into 2 bits of parentCodes:
+    // 0 for the parent to the left, 1 for the one above, 2 for the right
+    private boolean lowMemory;
+    private double[] costUp;
+    private double[] costRow;
+    private long[] parentCodes;
+    
+    // How precisely full searches add up the energy along their paths. In
+    // reduced precision the distances are kept in distToFloat, or in
+    // distToFixed as multiples of 1 / FIXED_SCALE, instead of in distTo, and
+    // the energy is read from a copy in the same precision, energyFloat or
+    // energyFixed, laid out like energy and kept up to date with it.
+    // Fixed-point energies are capped at fixedCap, so that no path down
+    // either layout can overflow an int.
+    private Precision precision = Precision.DOUBLE;
+    private float[] distToFloat;
+    private int[] distToFixed;
+    private float[] energyFloat;
+    private int[] energyFixed;
+    private int fixedCap;
+    
+    // The number of pixels relaxed to prepare the most recent search
+    private long relaxed;
+    
+    // Where the time goes, or null to keep no account of it; and how long
+    // the energy of every pixel took to calculate when the carver was made
+    private SeamCarverMetrics metrics;
+    private long initNanos;
+    
+    // While a batch of seams is removed with a checkpoint interval above 1,
+    // seams are taken out of energy and the shortest paths right away but
+    // out of color only at checkpoints. The column of pending seam t in row i
+    // is pendingSeams[t * rows() + i], counted as the columns were when that
+    // seam was removed.
+    private boolean deferring;
+    private int[] pendingSeams;
+    private int pending;
+    private int checkpoint = CHECKPOINT;
+    
+    // Scratch space for checkpoints and for the energy of pixels near a seam
+    // while color still holds pending seams
+    private long[] removedBits;
+    private int[] window;
+    
+    // The side of the square blocks a picture is transposed in
+    private static final int BLOCK = 64;
+    
+    // The default number of seams a batch removes between checkpoints
+    private static final int CHECKPOINT = 1;
+    
+    // The number of steps per unit of energy in fixed-point searches
+    private static final double FIXED_SCALE = 64;
+    
+    // The fewest columns a parallel search hands to one thread; rows narrower
+    // than two of these are searched serially
+    private static final int MIN_CHUNK = 1024;
+    
+    // The most pixels a picture may have, so that its buffers fit in arrays
+    private static final int MAX_PIXELS = Integer.MAX_VALUE - 8;
+    
     /**
-     * Create a seam carver object based on the given picture.
+     * Create a seam carver object based on the given picture, using the
+     * dual-gradient energy function.
      * 
      * @param picture the given picture
      * @throws NullPointerException if the given picture is {@code null}.
+     * @throws IllegalArgumentException if the picture has more pixels than
+     *         an array can hold.
      */
     public SeamCarver(Picture picture) {
+        this(picture, new DualGradientEnergy());
+    }
+    
+    /**
+     * Create a seam carver object based on the given picture, using the given
+     * energy function.
+     * 
+     * @param picture the given picture
+     * @param energyFunction the energy function
+     * @throws NullPointerException if the given picture or energy function
+     *         is {@code null}.
+     * @throws IllegalArgumentException if the picture has more pixels than
+     *         an array can hold.
+     */
+    public SeamCarver(Picture picture, EnergyFunction energyFunction) {
         if (picture == null) throw new java.lang.NullPointerException();
+        if (energyFunction == null) throw new java.lang.NullPointerException();
+        this.energyFunction = energyFunction;
         
         // Initialize the dimensions of the picture
         w = picture.width();
         h = picture.height();
+        stride = w;
         
         // Store the picture's color information in an int array,
         // using the RGB coding described at:
         // http://docs.oracle.com/javase/8/docs/api/java/awt/Color.html#getRGB()
-        color = new int[h][w];
-        
-        // Set the dimensions of the energy array
-        energy = new double[h][w];
+        color = new int[area(w, h)];
         
         // Store color information
         for (int i = 0; i < h; i++) {
             for (int j = 0; j < w; j++) {
-                color[i][j] = picture.get(j, i).getRGB();
+                color[i * stride + j] = picture.get(j, i).getRGB();
             }
         }
         
-        // Pre-calculate the energy array
-        for (int i = 0; i < h; i++) {
-            for (int j = 0; j < w; j++) {
-                energy[i][j] = calcEnergy(j, i);
-            }
-        }
+        initEnergy();
     }
     
     /**
-     * Current picture.
+     * Create a seam carver object based on the given image, using the
+     * dual-gradient energy function.
      * 
-     * @return the current picture.
+     * @param image the given image
+     * @throws NullPointerException if the given image is {@code null}.
+     * @throws IllegalArgumentException if the picture has more pixels than
+     *         an array can hold.
      */
-    public Picture picture() {
-        
-        // Create and return a new pic with the stored color information
-        Picture pic = new Picture(width(), height());
-        for (int i = 0; i < height(); i++) {
-            for (int j = 0; j < width(); j++) {
-                pic.set(j, i, new Color(color[i][j]));
-            }
-        }
-        return new Picture(pic);
+    public SeamCarver(BufferedImage image) {
+        this(image, new DualGradientEnergy());
     }
     
     /**
-     * Width of current picture.
+     * Create a seam carver object based on the given image, using the given
+     * energy function.
      * 
-     * @return the width of the current picture.
+     * Images whose pixels are stored as packed RGB or ARGB ints are copied
+     * straight out of their data buffer; any other image is converted with a
+     * single call to BufferedImage.getRGB(). Alpha is kept along with the
+     * colors, and toBufferedImage() gives it back.
+     * 
+     * @param image the given image
+     * @param energyFunction the energy function
+     * @throws NullPointerException if the given image or energy function
+     *         is {@code null}.
+     * @throws IllegalArgumentException if the picture has more pixels than
+     *         an array can hold.
      */
-    public int width() {
-        return w;
+    public SeamCarver(BufferedImage image, EnergyFunction energyFunction) {
+        if (image == null) throw new java.lang.NullPointerException();
+        if (energyFunction == null) throw new java.lang.NullPointerException();
+        this.energyFunction = energyFunction;
+        
+        w = image.getWidth();
+        h = image.getHeight();
+        stride = w;
+        color = new int[area(w, h)];
+        load(image);
+        
+        initEnergy();
     }
     
     /**
-     * Height of current picture.
+     * Copy the colors of an image the size of the current picture into color,
+     * row by row.
      * 
-     * @return the height of the current picture.
+     * @param image the image
      */
-    public int height() {
-        return h;
+    private void load(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        int type = image.getType();
+        if ((type == BufferedImage.TYPE_INT_RGB ||
+             type == BufferedImage.TYPE_INT_ARGB) &&
+                raster.getDataBuffer() instanceof DataBufferInt &&
+                raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+            SinglePixelPackedSampleModel sm =
+                    (SinglePixelPackedSampleModel) raster.getSampleModel();
+            DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+            int[] data = buffer.getData();
+            int scan = sm.getScanlineStride();
+            int base = buffer.getOffset() +
+                       sm.getOffset(-raster.getSampleModelTranslateX(),
+                                    -raster.getSampleModelTranslateY());
+            
+            for (int i = 0; i < h; i++) {
+                System.arraycopy(data, base + i * scan, color, i * stride, w);
+            }
+            
+            // Opaque pixels report full alpha, as getRGB() would
+            if (type == BufferedImage.TYPE_INT_RGB) {
+                for (int p = 0; p < h * w; p++) color[p] |= 0xFF000000;
+            }
+        }
+        else {
+            image.getRGB(0, 0, w, h, color, 0, stride);
+        }
     }
     
     /**
-     * Energy of pixel at column x and row y.
+     * Create a seam carver object based on the given pixels, using the
+     * dual-gradient energy function.
      * 
-     * Note that (0, 0) is the pixel at the top-left corner of the image.
+     * @param argb the colors of the pixels, row by row, packed as by
+     *        Color.getRGB()
+     * @param width the width of the picture
+     * @param height the height of the picture
+     * @throws NullPointerException if <em>argb</em> is {@code null}.
+     * @throws IllegalArgumentException if <em>width</em> or <em>height</em>
+     *         is negative, or if <em>argb</em> holds fewer than
+     *         <em>width</em> * <em>height</em> pixels.
+     */
+    public SeamCarver(int[] argb, int width, int height) {
+        this(argb, width, height, new DualGradientEnergy());
+    }
+    
+    /**
+     * Create a seam carver object based on the given pixels, using the given
+     * energy function.
      * 
-     * The dual-gradient energy function is used to compute the energy of a
-     * pixel.
+     * The pixels are copied, so the array may be reused afterwards.
      * 
-     * @param x
-     * @param y
-     * @return the energy of the pixel at column <em>x</em> and row <em>y</em>.
-     * @throws IndexOutOfBoundsException if <em>x</em> is greater than
-     *         or equal to the image width, if <em>y</em> is greater than or
-     *         equal to the image height, or if <em>x</em> or <em>y</em> are
-     *         negative.
+     * @param argb the colors of the pixels, row by row, packed as by
+     *        Color.getRGB()
+     * @param width the width of the picture
+     * @param height the height of the picture
+     * @param energyFunction the energy function
+     * @throws NullPointerException if <em>argb</em> or the energy function
+     *         is {@code null}.
+     * @throws IllegalArgumentException if <em>width</em> or <em>height</em>
+     *         is negative, or if <em>argb</em> holds fewer than
+     *         <em>width</em> * <em>height</em> pixels.
      */
-    public double energy(int x, int y) {        
-        if (x >= width() || y >= height() || x < 0 || y < 0)
-            throw new java.lang.IndexOutOfBoundsException();
+    public SeamCarver(int[] argb, int width, int height,
+                      EnergyFunction energyFunction) {
+        if (argb == null) throw new java.lang.NullPointerException();
+        if (energyFunction == null) throw new java.lang.NullPointerException();
+        if (width < 0 || height < 0)
+            throw new java.lang.IllegalArgumentException("Negative dimension");
+        if ((long) width * height > argb.length)
+            throw new java.lang.IllegalArgumentException("Too few pixels");
+        this.energyFunction = energyFunction;
         
-        return energy[y][x];
-    }
+        w = width;
+        h = height;
+        stride = w;
+        color = Arrays.copyOf(argb, h * w);
         
+        initEnergy();
+    }
+    
     /**
-     * Helper method to calculate the energy of pixel at column x and row y.
+     * Allocate the energy array and calculate the energy of every pixel,
+     * once the color information is in place.
+     */
+    private void initEnergy() {
+        long start = System.nanoTime();
+        if (energy == null || energy.length < h * w) energy = new double[h * w];
+        energyFunction.energy(color, 0, stride, w, h, energy);
+        narrowEnergy();
+        initNanos = System.nanoTime() - start;
+        if (metrics != null) setMetrics(metrics);
+    }
+    
+    /**
+     * Start over on a new picture, keeping the buffers of the old one where
+     * they are big enough to hold it.
      * 
-     * Note that (0,0) is the pixel at the top-left corner of the image.
+     * The energy function, the parallelism, the modes, the precision and the
+     * metrics stay as they were. A carver reset this way behaves exactly as
+     * a new carver made from the same pixels and given the same settings.
      * 
-     * The dual-gradient energy function is used to compute the energy of a
-     * pixel.
+     * @param argb the colors of the pixels, row by row, packed as by
+     *        Color.getRGB()
+     * @param width the width of the picture
+     * @param height the height of the picture
+     * @throws NullPointerException if <em>argb</em> is {@code null}.
+     * @throws IllegalArgumentException if <em>width</em> or <em>height</em>
+     *         is negative, or if <em>argb</em> holds fewer than
+     *         <em>width</em> * <em>height</em> pixels.
+     */
+    void reset(int[] argb, int width, int height) {
+        if (argb == null) throw new java.lang.NullPointerException();
+        if (width < 0 || height < 0)
+            throw new java.lang.IllegalArgumentException("Negative dimension");
+        if ((long) width * height > argb.length)
+            throw new java.lang.IllegalArgumentException("Too few pixels");
+        
+        prepare(width, height);
+        System.arraycopy(argb, 0, color, 0, h * w);
+        
+        initEnergy();
+    }
+    
+    /**
+     * Start over on a new image, keeping the buffers of the old picture
+     * where they are big enough to hold it.
      * 
-     * @param x
-     * @param y
-     * @return the energy of the pixel at column <em>x</em> and row <em>y</em>.
-     * @throws IndexOutOfBoundsException if <em>x</em> is greater than
-     *         or equal to the image width, if <em>y</em> is greater than or
-     *         equal to the image height, or if <em>x</em> or <em>y</em> are
-     *         negative.
+     * @param image the image
+     * @throws NullPointerException if the given image is {@code null}.
+     * @throws IllegalArgumentException if the picture has more pixels than
+     *         an array can hold.
+     * @see #reset(int[], int, int)
      */
-    private double calcEnergy(int x, int y) {        
-        if (x >= width() || y >= height() || x < 0 || y < 0)
-            throw new java.lang.IndexOutOfBoundsException();
-                
-        // Return 1000.0 for border pixels
-        if (x == 0 || y == 0 || x == width() - 1 || y == height() - 1)
-            return (double) 1000;
+    void reset(BufferedImage image) {
+        if (image == null) throw new java.lang.NullPointerException();
         
-        // Store pixel values in Color objects.
-        Color up = new Color(color[y - 1][x]);
-        Color down = new Color(color[y + 1][x]);
-        Color left = new Color(color[y][x - 1]);
-        Color right = new Color(color[y][x + 1]);
+        prepare(image.getWidth(), image.getHeight());
+        load(image);
         
-        return Math.sqrt(gradient(up, down) + gradient(left, right));
+        initEnergy();
     }
     
     /**
-     * Returns the gradient computed from the two Colors <em>a</em> and
-     * <em>b</em>.
+     * Number of pixels in a picture of the given size.
      * 
-     * @param a the first Color
-     * @param b the second Color
-     * @return the gradient of <em>a</em> and <em>b</em>.
+     * @param width the width of the picture
+     * @param height the height of the picture
+     * @return the product of the width and the height.
+     * @throws IllegalArgumentException if the picture has more pixels than
+     *         an array can hold.
      */
-    private double gradient(Color a, Color b) {
-        return Math.pow(a.getRed() - b.getRed(), 2) +
-               Math.pow(a.getBlue() - b.getBlue(), 2) +
-               Math.pow(a.getGreen() - b.getGreen(), 2);
+    static int area(int width, int height) {
+        long area = (long) width * height;
+        if (area > MAX_PIXELS)
+            throw new java.lang.IllegalArgumentException("Picture too large");
+        return (int) area;
     }
     
     /**
-     * Sequence of indices for horizontal seam.
-     *
-     * This method conducts a shortest-path search as if the energy matrix
-     * were an edge-weighted directed acyclic graph.
+     * Take on the size of a new picture, untransposed, growing the buffers if
+     * they cannot hold it.
      * 
-     * The source vertex is an implicit vertex sitting to the left of the image,
-     * to which all of the left-column pixels are adjacent.
+     * @param width the width of the new picture
+     * @param height the height of the new picture
+     */
+    private void prepare(int width, int height) {
+        int area = area(width, height);
+        w = width;
+        h = height;
+        stride = w;
+        transposed = false;
+        pathsValid = false;
+        
+        // Everything laid out like color and energy is as big as they are,
+        // so it all fits the new picture if they do
+        if (color.length < area) {
+            color = new int[area];
+            energy = null;
+            spareColor = null;
+            spareEnergy = null;
+            distTo = null;
+            distToFloat = null;
+            distToFixed = null;
+            energyFloat = null;
+            energyFixed = null;
+            edgeTo = null;
+        }
+        if (costUp != null && (costUp.length < Math.max(w, h)
+                || parentCodes.length < (int) (((long) w * h + 31) / 32))) {
+            costUp = null;
+            costRow = null;
+            parentCodes = null;
+        }
+    }
+    
+    /**
+     * Put every setting back as it is on a new carver: serial, neither
+     * incremental nor low-memory, in double precision, without metrics, and
+     * with the default checkpoint interval.
+     */
+    void clearSettings() {
+        usePool(null, false);
+        setIncremental(false);
+        setLowMemory(false);
+        setPrecision(Precision.DOUBLE);
+        metrics = null;
+        checkpoint = CHECKPOINT;
+    }
+    
+    /**
+     * Number of pixels the color and energy buffers have room for.
      * 
-     * The sink vertex is an explicit vertex sitting to the right of the image,
-     * which is (the only vertex) adjacent to all of the right-column pixels.
+     * @return the length of the buffers.
+     */
+    int capacity() {
+        return color.length;
+    }
+    
+    /**
+     * Number of bytes the arrays of this carver take up.
      * 
-     * Each pixel can visit only the pixel to its immediate right, the pixel to
-     * its right and above it (if possible), and the pixel to its right and
-     * below it (if possible).
+     * @return the bytes of every buffer and scratch array the carver keeps,
+     *         not counting the headers of the arrays.
+     */
+    long retainedBytes() {
+        long bytes = 4L * color.length + 8L * energy.length;
+        if (spareColor != null) bytes += 4L * spareColor.length;
+        if (spareEnergy != null) bytes += 8L * spareEnergy.length;
+        if (distTo != null) bytes += 8L * distTo.length;
+        if (distToFloat != null) bytes += 4L * distToFloat.length;
+        if (distToFixed != null) bytes += 4L * distToFixed.length;
+        if (energyFloat != null) bytes += 4L * energyFloat.length;
+        if (energyFixed != null) bytes += 4L * energyFixed.length;
+        if (edgeTo != null) bytes += edgeTo.length;
+        if (costUp != null) bytes += 8L * (costUp.length + costRow.length);
+        if (parentCodes != null) bytes += 8L * parentCodes.length;
+        if (pendingSeams != null) bytes += 4L * pendingSeams.length;
+        if (removedBits != null) bytes += 8L * removedBits.length;
+        if (window != null) bytes += 4L * window.length;
+        return bytes;
+    }
+    
+    /**
+     * Current picture.
      * 
-     * @return the sequence of indices for the horizontal seam.
+     * @return the current picture.
      */
-    public int[] findHorizontalSeam() {
-        transposed = true;
-
-        // Reset our distTo and edgeTo values for a new search
-        distToSink = Double.POSITIVE_INFINITY;
-        edgeToSink = Integer.MAX_VALUE;
-        distTo = new double[h][w];
-        edgeTo = new int[h][w];
-        for (double[] r: distTo) Arrays.fill(r, Double.POSITIVE_INFINITY);
-        for (int[] r: edgeTo) Arrays.fill(r, Integer.MAX_VALUE);
-        
-        // Relax the entire left column, since this is our starting column
-        for (int i = 0; i < height(); i++) {
-            distTo[i][0] = (double) 1000;
-            edgeTo[i][0] = -1;
-        }
+    public Picture picture() {
         
-        // Visit all pixels from the left side, diagonally to the right,
-        // in keeping with topological order.
-        // The topological order is the reverse of the DFS post-order,
-        // which visits the top-most adjacent pixel first, before it visits
-        // the pixels below.
-        for (int depth = height() - 1; depth > 0; depth--) {
-            for (int out = 0;
-                    out < width() && depth + out < height();
-                    out++) {
-                visit(depth + out, out);
+        // Create and return a new pic with the stored color information
+        Picture pic = new Picture(width(), height());
+        for (int i = 0; i < height(); i++) {
+            for (int j = 0; j < width(); j++) {
+                pic.set(j, i, new Color(color[index(j, i)]));
             }
         }
-        
-        // Visit all pixels from the top, diagonally to the right,
-        // in keeping with the topological order described above.
-        for (int top = 0; top < width(); top++) {
-            for (int depth = 0;
-                    depth + top < width() && depth < height();
-                    depth++) {
-                visit(depth, depth + top);
+        return pic;
+    }
+    
+    /**
+     * Current picture, as an image.
+     * 
+     * The pixels are written straight into the data buffer of the new image,
+     * a row at a time while the picture is not transposed. Alpha is kept, so
+     * a translucent image read in comes back out with its alpha.
+     * 
+     * @return the current picture, as a new image of type
+     *         {@code TYPE_INT_ARGB} if any pixel is not fully opaque, and of
+     *         type {@code TYPE_INT_RGB} otherwise.
+     */
+    public BufferedImage toBufferedImage() {
+        int[] data = new int[width() * height()];
+        copyPixels(data);
+        return toImage(data, width(), height());
+    }
+    
+    /**
+     * An image backed by the given pixels, of type {@code TYPE_INT_ARGB} if
+     * any of them is not fully opaque, and of type {@code TYPE_INT_RGB}
+     * otherwise.
+     * 
+     * @param argb the colors of the pixels, row by row, packed as by
+     *        Color.getRGB(); the image keeps the array as its data buffer
+     * @param width the width of the image
+     * @param height the height of the image
+     * @return the image.
+     */
+    static BufferedImage toImage(int[] argb, int width, int height) {
+        boolean opaque = true;
+        for (int p = 0; p < width * height; p++) {
+            if (argb[p] >>> 24 != 0xFF) {
+                opaque = false;
+                break;
             }
         }
         
-        // Populate seam[] with the shortest path
-        int[] seam = new int[width()];
-        seam[width() - 1] = edgeToSink;
-        
-        for (int j = width() - 1; j > 0; j--) {
-            seam[j - 1] = edgeTo[seam[j]][j];
-        }
-        
-        // null out our shortest-path arrays for garbage collection
-        distTo = null;
-        edgeTo = null;
-        
-        return seam;
-
+        DirectColorModel model = opaque
+                ? new DirectColorModel(24, 0xFF0000, 0xFF00, 0xFF)
+                : (DirectColorModel) ColorModel.getRGBdefault();
+        WritableRaster raster = Raster.createPackedRaster(
+                new DataBufferInt(argb, width * height), width, height, width,
+                model.getMasks(), null);
+        return new BufferedImage(model, raster, false, null);
     }
     
     /**
-     * Sequence of indices for vertical seam.
-     * 
-     * This method conducts a shortest-path search as if the energy matrix
-     * were an edge-weighted directed acyclic graph.
+     * Current picture, as packed colors.
      * 
-     * The source vertex is an implicit vertex sitting above the image, to which
-     * all of the top-row pixels are adjacent.
+     * @return the color of every pixel of the current picture, row by row,
+     *         packed as by Color.getRGB().
+     */
+    public int[] toArgb() {
+        int[] argb = new int[width() * height()];
+        copyPixels(argb);
+        return argb;
+    }
+    
+    /**
+     * An unchanging copy of the current picture and its energy.
      * 
-     * The sink vertex is an explicit vertex sitting below the image, which is
-     * (the only vertex) adjacent to all of the bottom-row pixels.
+     * A carver must only be used by one thread at a time, and its picture
+     * changes with every seam. A snapshot holds what the picture was when it
+     * was taken, and may be read from any number of threads while the
+     * carver goes on carving.
      * 
-     * Each pixel can visit only the pixel directly below it, the pixel below it
-     * and to its left (if possible), and the pixel below it and to its right
-     * (if possible).
+     * @return a snapshot of the current picture.
+     */
+    public Snapshot snapshot() {
+        int[] argb = new int[width() * height()];
+        double[] e = new double[argb.length];
+        copyPixels(argb);
+        for (int y = 0; y < height(); y++) {
+            for (int x = 0; x < width(); x++) {
+                e[y * width() + x] = energy[index(x, y)];
+            }
+        }
+        return new Snapshot(argb, e, width(), height());
+    }
+    
+    /**
+     * A picture and its energy as they were at some point of the carving.
      * 
-     * @return the sequence of indices for the vertical seam.
+     * Snapshots never change, so they are safe to read from several threads.
      */
-    public int[] findVerticalSeam() {
-        transposed = false;
+    public static final class Snapshot {
         
-        // Reset our distTo and edgeTo values for a new search
-        distToSink = Double.POSITIVE_INFINITY;
-        edgeToSink = Integer.MAX_VALUE;
-        distTo = new double[h][w];
-        edgeTo = new int[h][w];
-        for (double[] r: distTo) Arrays.fill(r, Double.POSITIVE_INFINITY);
-        for (int[] r: edgeTo) Arrays.fill(r, Integer.MAX_VALUE);
+        // The colors and the energy of the pixels, row by row
+        private final int[] color;
+        private final double[] energy;
+        private final int w;
+        private final int h;
         
-        // Relax the entire top row, since this is our starting row
-        Arrays.fill(distTo[0], (double) 1000);
-        Arrays.fill(edgeTo[0], -1);
+        private Snapshot(int[] color, double[] energy, int w, int h) {
+            this.color = color;
+            this.energy = energy;
+            this.w = w;
+            this.h = h;
+        }
         
-        // Visit all pixels from the top, diagonally to the right,
-        // in keeping with topological order.
-        // The topological order is the reverse of the DFS post-order,
-        // which visits the left-most adjacent pixel first, before it visits
-        // pixels to the right.
-        for (int top = width() - 1; top >= 0; top--) {
-            for (int depth = 0;
-                    depth + top < width() && depth < height();
-                    depth++) {
-                visit(depth, depth + top);
-            }
+        /**
+         * Width of the picture.
+         * 
+         * @return the width of the picture.
+         */
+        public int width() {
+            return w;
         }
-        // Visit all pixels from the left side, diagonally to the right,
-        // in keeping with the topological order described above.
-        for (int depth = 1; depth < height(); depth++) {
-            for (int out = 0;
-                    out < width() && depth + out < height();
-                    out++) {
-                visit(depth + out, out);
-            }
+        
+        /**
+         * Height of the picture.
+         * 
+         * @return the height of the picture.
+         */
+        public int height() {
+            return h;
         }
         
-        // Populate seam[] with the shortest path
-        int[] seam = new int[height()];
-        seam[height() - 1] = edgeToSink;
+        /**
+         * Energy of pixel at column x and row y.
+         * 
+         * @param x
+         * @param y
+         * @return the energy of the pixel at column <em>x</em> and row
+         *         <em>y</em>.
+         * @throws IndexOutOfBoundsException if <em>x</em> or <em>y</em> is
+         *         outside the picture.
+         */
+        public double energy(int x, int y) {
+            if (x < 0 || x >= w || y < 0 || y >= h)
+                throw new java.lang.IndexOutOfBoundsException();
+            return energy[y * w + x];
+        }
         
-        for (int i = height() - 1; i > 0; i--) {
-            seam[i - 1] = edgeTo[i][seam[i]];
+        /**
+         * The picture, as a new Picture.
+         * 
+         * @return the picture.
+         */
+        public Picture picture() {
+            Picture pic = new Picture(w, h);
+            for (int i = 0; i < h; i++) {
+                for (int j = 0; j < w; j++) {
+                    pic.set(j, i, new Color(color[i * w + j]));
+                }
+            }
+            return pic;
         }
         
-        // null out our shortest-path arrays for garbage collection
-        distTo = null;
-        edgeTo = null;
+        /**
+         * The picture, as a new image of type {@code TYPE_INT_ARGB} if any
+         * pixel is not fully opaque, and of type {@code TYPE_INT_RGB}
+         * otherwise.
+         * 
+         * @return the picture.
+         */
+        public BufferedImage toBufferedImage() {
+            return toImage(color.clone(), w, h);
+        }
         
-        return seam;
+        /**
+         * The picture, as packed colors.
+         * 
+         * @return a new array of the color of every pixel, row by row,
+         *         packed as by Color.getRGB().
+         */
+        public int[] toArgb() {
+            return color.clone();
+        }
     }
     
     /**
-     * Given a pixel's coordinates, relax the pixels adjacent to that pixel.
+     * Copy the color of every pixel into the given array, row by row.
      * 
-     * @param i the vertical index of the pixel
-     * @param j the horizontal index of the pixel
+     * @param out the array to copy to, with room for the whole picture
      */
-    private void visit(int i, int j) {
-        if (transposed) {
-            // Only relax the sink
-            if (j == width() - 1) {
-                relax(i, j);
-            }
-
-            // Bottom edge; relax to the right and above
-            else if (i == height() - 1) {
-                relax(i, j, i, j + 1);
-                relax(i, j, i - 1, j + 1);
-            }
-
-            // Top edge; relax to the right and below
-            else if (i == 0) {
-                relax(i, j, i, j + 1);
-                relax(i, j, i + 1, j + 1);
-            }
-
-            // Middle pixel; relax right, below, and above
-            else {
-                relax(i, j, i - 1, j + 1);
-                relax(i, j, i, j + 1);
-                relax(i, j, i + 1, j + 1);
+    void copyPixels(int[] out) {
+        if (!transposed) {
+            for (int i = 0; i < height(); i++) {
+                System.arraycopy(color, i * stride, out, i * width(), width());
             }
+            return;
         }
         
-        else {
-            // Only relax the sink
-            if (i == height() - 1) {
-                relax(i, j);
-            }
-
-            // Right edge; relax below and to the left
-            else if (j == width() - 1) {
-                relax(i, j, i + 1, j - 1);
-                relax(i, j, i + 1, j);
-            }
-
-            // Left edge; relax below and to the right
-            else if (j == 0) {
-                relax(i, j, i + 1, j);
-                relax(i, j, i + 1, j + 1);
-            }
-
-            // Middle pixel; relax left, below, and right
-            else {
-                relax(i, j, i + 1, j - 1);
-                relax(i, j, i + 1, j);
-                relax(i, j, i + 1, j + 1);
+        for (int i = 0; i < height(); i++) {
+            for (int j = 0; j < width(); j++) {
+                out[i * width() + j] = color[j * stride + i];
             }
         }
     }
     
     /**
-     * Given an index, relax the sink vertex from that index.
+     * Width of current picture.
      * 
-     * This method should only be called on the "last" vertices in the image.
+     * @return the width of the current picture.
+     */
+    public int width() {
+        return w;
+    }
+    
+    /**
+     * Height of current picture.
      * 
-     * @param i the vertical index of the pixel
-     * @param j the horizontal index of the pixel
+     * @return the height of the current picture.
      */
-    private void relax(int i, int j) {
-        if (validIndex(i, j)) {
-            if (distToSink > distTo[i][j]) {
-                distToSink = distTo[i][j];
-                if (transposed) edgeToSink = i;
-                else edgeToSink = j;
-            }
-        }
+    public int height() {
+        return h;
     }
     
     /**
-     * Given the coordinates of pixel 1 and pixel 2, relax pixel 2 from pixel 1.
+     * Search for seams on the given pool.
      * 
-     * This method should not be called on the "last" pixels in the image.
+     * Each row of the search is split into chunks of adjacent columns, which
+     * the pool relaxes side by side before any of them moves on to the next
+     * row. Pictures too narrow to split are still searched serially. The
+     * seams found are exactly the ones a serial search finds.
      * 
-     * @param i1 the vertical index of pixel 1
-     * @param j1 the horizontal index of pixel 1
-     * @param i2 the vertical index of pixel 2
-     * @param j2 the horizontal index of pixel 2
+     * The pool stays the caller's to shut down.
+     * 
+     * @param pool the pool to search on, or {@code null} to search serially
      */
-    private void relax(int i1, int j1, int i2, int j2) {
-        if (validIndex(i1, j1) && validIndex(i2, j2)) {
-            if (distTo[i2][j2] > distTo[i1][j1] + energy[i2][j2]) {
-                distTo[i2][j2] = distTo[i1][j1] + energy[i2][j2];
-                if (transposed) edgeTo[i2][j2] = i1;
-                else edgeTo[i2][j2] = j1;
-            }
-        }
+    public void setParallelism(ForkJoinPool pool) {
+        usePool(pool, false);
     }
     
     /**
-     * Is the given pixel coordinate valid?
+     * Search for seams on a new pool with the given number of threads.
+     * 
+     * The carver owns the new pool, and shuts it down as soon as another
+     * call to setParallelism replaces it.
      * 
-     * @param i the vertical index of the pixel
-     * @param j the horizontal index of the pixel
-     * @return {@code true} if the current picture contains the pixel coordinate,
-     *         {@code false} otherwise.
+     * @param parallelism the number of threads to search with; 1 searches
+     *        serially
+     * @throws IllegalArgumentException if <em>parallelism</em> is less than 1.
+     * @see #setParallelism(ForkJoinPool)
      */
-    private boolean validIndex(int i, int j) {
-        return (i >= 0 && i < height() && j >= 0 && j < width());
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new java.lang.IllegalArgumentException("Parallelism below 1");
+        
+        if (parallelism == 1) usePool(null, false);
+        else usePool(new ForkJoinPool(parallelism), true);
     }
     
     /**
-     * Remove horizontal seam from current picture.
+     * Search on the given pool from now on, shutting down the pool searched
+     * on so far if the carver made it.
      * 
-     * @param seam the given seam.
-     * @throws NullPointerException if the given <em>seam</em> is {@code null}.
-     * @throws IllegalArgumentException if the given <em>seam</em> does not
-     *         match the picture width, if an index in the given <em>seam</em>
-     *         is negative or is taller than the picture, or if two adjacent
-     *         entries in the given <em>seam</em> differ by more than 1.
+     * @param pool the pool to search on, or {@code null} to search serially
+     * @param owned whether the carver made the pool
      */
-    public void removeHorizontalSeam(int[] seam) {
-        
-        // Check for bad input
-        if (height() <= 1)
-            throw new java.lang.IllegalArgumentException("Picture too short");
-        if (seam == null) throw new java.lang.NullPointerException();
-        if (seam.length != width())
-            throw new java.lang.IllegalArgumentException("Invalid seam length");
+    private void usePool(ForkJoinPool pool, boolean owned) {
+        if (ownsPool && this.pool != pool) this.pool.shutdown();
+        this.pool = pool;
+        ownsPool = owned;
+    }
+    
+    /**
+     * Keep the shortest paths to every pixel between seams.
+     * 
+     * Removing a seam only changes the energy of the pixels beside it, so
+     * only the paths that start from those pixels, a cone widening downward
+     * from the seam, can change. In incremental mode each removal shifts the
+     * stored paths along with the pixels and relaxes that cone again, instead
+     * of relaxing the whole picture on the next search. Switching between
+     * vertical and horizontal seams still starts over with a full search.
+     * The seams found are exactly the ones a full search finds.
+     * 
+     * @param incremental {@code true} to keep the paths between seams
+     * @see #relaxedCells()
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        pathsValid = false;
+    }
+    
+    /**
+     * Search for seams with as little memory as possible.
+     * 
+     * A full search keeps the distance and parent of every pixel, 9 bytes a
+     * pixel. In low-memory mode a search keeps only the distances of the row
+     * above the one being relaxed, and packs the parent of each pixel, which
+     * is never more than one column away, into 2 bits: a quarter of a byte
+     * a pixel. The seams found are exactly the ones a full search finds.
+     * 
+     * Low-memory searches run serially and keep nothing between seams, so
+     * this mode takes precedence over incremental mode, and batch removals
+     * search the whole picture for every seam.
+     * 
+     * @param lowMemory {@code true} to search with packed parents
+     * @see #setIncremental(boolean)
+     */
+    public void setLowMemory(boolean lowMemory) {
+        this.lowMemory = lowMemory;
+        pathsValid = false;
         
-        int yLast = seam[0];
-        for (int y: seam) {
-            if (y >= height() || y < 0)
-                throw new java.lang.IllegalArgumentException("Index out of bounds");
-            if (Math.abs(y - yLast) > 1)
+        // Let the full-size arrays go, or the compact ones
+        if (lowMemory) {
+            distTo = null;
+            distToFloat = null;
+            distToFixed = null;
+            edgeTo = null;
+        }
+        else {
+            costUp = null;
+            costRow = null;
+            parentCodes = null;
+        }
+    }
+    
+    /**
+     * The precisions seam searches can add up energy in.
+     */
+    public enum Precision {
+        
+        /** Every distance is a double, as the energy is. */
+        DOUBLE,
+        
+        /** Every distance is a float, and the energy is rounded to one. */
+        FLOAT,
+        
+        /** 
+         * Every distance is an int counting 64ths of a unit of energy, and
+         * the energy is rounded to one.
+         */
+        FIXED
+    }
+    
+    /**
+     * Search for seams with the given precision.
+     * 
+     * A full search reads 8 bytes of energy and writes 8 bytes of distance
+     * a pixel in doubles. In reduced precision searches read a float or
+     * fixed-point copy of the energy and keep their distances in the same
+     * width, so they move half the memory while they relax. Only the search
+     * gains: the carver keeps the copy beside the doubles, which stay the
+     * energy every other method reads, so the energy takes half as much
+     * memory again, and seam removal, which shifts the copy along with the
+     * rest, moves more bytes than in double precision.
+     * 
+     * Along a path of more than a few thousand pixels a float keeps only a
+     * fraction of a unit of energy, and fixed-point energy is rounded to
+     * 1/64 of a unit and capped so that the longest path fits in an int;
+     * either way, paths that are nearly as short as the shortest may take
+     * its place. PrecisionValidation measures how often that happens.
+     * 
+     * Only single seams are searched in reduced precision. Low-memory
+     * searches, which keep just two rows of distances, and the searches for
+     * several seams at once, for approximate seams or for seams near a
+     * guess always use doubles.
+     * 
+     * @param precision the precision to search with; double by default
+     * @throws NullPointerException if the given precision is {@code null}.
+     */
+    public void setPrecision(Precision precision) {
+        if (precision == null) throw new java.lang.NullPointerException();
+        this.precision = precision;
+        pathsValid = false;
+        
+        // Let the distances of the other precisions go
+        if (precision != Precision.DOUBLE) distTo = null;
+        if (precision != Precision.FLOAT) distToFloat = null;
+        if (precision != Precision.FIXED) distToFixed = null;
+        narrowEnergy();
+    }
+    
+    /**
+     * Keep an account of where the carver's time goes.
+     * 
+     * Every phase of the carver's work from now on is timed and counted in
+     * the given metrics object, and reported to the flight recorder. The
+     * first metrics object a carver is given is also charged with the
+     * energy calculated when the carver was made. Without metrics, which is
+     * the default, the carver only checks for them once per phase.
+     * 
+     * @param metrics the metrics to keep, or {@code null} to keep none
+     * @see SeamCarverMetrics#snapshot()
+     */
+    public void setMetrics(SeamCarverMetrics metrics) {
+        if (metrics != null && initNanos > 0) {
+            metrics.add(SeamCarverMetrics.Phase.ENERGY, initNanos);
+            metrics.recalculated((long) w * h);
+            initNanos = 0;
+        }
+        this.metrics = metrics;
+    }
+    
+    /**
+     * Start timing a phase of the carver's work, if metrics are kept.
+     * 
+     * @param phase the phase
+     * @return the span to end when the phase is over, or {@code null}.
+     */
+    private SeamCarverMetrics.Span start(SeamCarverMetrics.Phase phase) {
+        if (metrics == null) return null;
+        return metrics.start(phase, w, h);
+    }
+    
+    /**
+     * Finish timing a phase, if one was started.
+     * 
+     * @param span the span start() returned
+     */
+    private static void end(SeamCarverMetrics.Span span) {
+        if (span != null) span.end();
+    }
+    
+    /**
+     * Number of pixels relaxed to prepare the most recent seam search.
+     * 
+     * A full search relaxes every pixel. In incremental mode, the search after
+     * a removal counts only the pixels that removal relaxed again.
+     * 
+     * @return the number of pixels relaxed for the most recent search.
+     * @see #setIncremental(boolean)
+     */
+    public long relaxedCells() {
+        return relaxed;
+    }
+    
+    /**
+     * Energy of pixel at column x and row y.
+     * 
+     * Note that (0, 0) is the pixel at the top-left corner of the image.
+     * 
+     * The energy function given to the constructor, dual-gradient unless
+     * another was given, is used to compute the energy of a pixel.
+     * 
+     * @param x
+     * @param y
+     * @return the energy of the pixel at column <em>x</em> and row <em>y</em>.
+     * @throws IndexOutOfBoundsException if <em>x</em> is greater than
+     *         or equal to the image width, if <em>y</em> is greater than or
+     *         equal to the image height, or if <em>x</em> or <em>y</em> are
+     *         negative.
+     */
+    public double energy(int x, int y) {        
+        if (x >= width() || y >= height() || x < 0 || y < 0)
+            throw new java.lang.IndexOutOfBoundsException();
+        
+        return energy[index(x, y)];
+    }
+        
+    /**
+     * Helper method to calculate the energy of pixel at column x and row y.
+     * 
+     * Note that (0,0) is the pixel at the top-left corner of the image.
+     * 
+     * @param x
+     * @param y
+     * @return the energy of the pixel at column <em>x</em> and row <em>y</em>.
+     * @throws IndexOutOfBoundsException if <em>x</em> is greater than
+     *         or equal to the image width, if <em>y</em> is greater than or
+     *         equal to the image height, or if <em>x</em> or <em>y</em> are
+     *         negative.
+     */
+    private double calcEnergy(int x, int y) {        
+        if (x >= width() || y >= height() || x < 0 || y < 0)
+            throw new java.lang.IndexOutOfBoundsException();
+        
+        if (transposed)
+            return energyFunction.energy(color, 0, stride, 1,
+                                         width(), height(), x, y);
+        return energyFunction.energy(color, 0, 1, stride,
+                                     width(), height(), x, y);
+    }
+    
+    /**
+     * Sequence of indices for horizontal seam.
+     *
+     * This method conducts a shortest-path search as if the energy matrix
+     * were an edge-weighted directed acyclic graph.
+     * 
+     * The source vertex is an implicit vertex sitting to the left of the image,
+     * to which all of the left-column pixels are adjacent.
+     * 
+     * The sink vertex is an implicit vertex sitting to the right of the image,
+     * to which all of the right-column pixels are adjacent.
+     * 
+     * Each pixel can be reached only from the pixel to its immediate left,
+     * the pixel to its left and above it (if possible), and the pixel to its
+     * left and below it (if possible).
+     * 
+     * Ties between equally short paths are broken in favor of the parent
+     * below, then the parent to the left, then the parent above; at the sink,
+     * in favor of the bottom-most pixel.
+     * 
+     * The search runs on the transpose of the picture, which is kept until a
+     * vertical seam is requested, so that a run of horizontal seams sweeps
+     * contiguous memory just like a run of vertical seams does.
+     * 
+     * @return the sequence of indices for the horizontal seam.
+     */
+    public int[] findHorizontalSeam() {
+        orient(true);
+        return findSeam(new int[width()]);
+    }
+    
+    /**
+     * Sequence of indices for vertical seam.
+     * 
+     * This method conducts a shortest-path search as if the energy matrix
+     * were an edge-weighted directed acyclic graph.
+     * 
+     * The source vertex is an implicit vertex sitting above the image, to which
+     * all of the top-row pixels are adjacent.
+     * 
+     * The sink vertex is an implicit vertex sitting below the image, to which
+     * all of the bottom-row pixels are adjacent.
+     * 
+     * Each pixel can be reached only from the pixel directly above it, the
+     * pixel above it and to its left (if possible), and the pixel above it
+     * and to its right (if possible).
+     * 
+     * Ties between equally short paths are broken in favor of the parent to
+     * the right, then the parent above, then the parent to the left; at the
+     * sink, in favor of the right-most pixel.
+     * 
+     * @return the sequence of indices for the vertical seam.
+     */
+    public int[] findVerticalSeam() {
+        orient(false);
+        return findSeam(new int[height()]);
+    }
+    
+    /**
+     * Sequence of indices for an approximately shortest horizontal seam.
+     * 
+     * @param levels the number of levels in the energy pyramid
+     * @param band the number of pixels the search may stray to either side
+     *        of the seam found at the level below
+     * @return the sequence of indices for the horizontal seam.
+     * @throws IllegalArgumentException if <em>levels</em> or <em>band</em>
+     *         is less than 1.
+     * @see #findApproximateVerticalSeam(int, int)
+     */
+    public int[] findApproximateHorizontalSeam(int levels, int band) {
+        if (levels < 1 || band < 1)
+            throw new java.lang.IllegalArgumentException("Invalid pyramid");
+        
+        orient(true);
+        return findSeamCoarseToFine(new int[width()], levels, band);
+    }
+    
+    /**
+     * Sequence of indices for an approximately shortest vertical seam.
+     * 
+     * The energy is averaged over 2-by-2 blocks, again and again, into a
+     * pyramid of ever smaller pictures. The exact seam is found in the
+     * smallest, then each larger picture is searched only within
+     * <em>band</em> pixels of the seam below it, doubled to the larger
+     * picture's scale. Each level halves both sides, so a search over a few
+     * levels relaxes a small fraction of the pixels a full search does, and
+     * a narrow band keeps the search at full size to a strip along the seam.
+     * 
+     * The seam is not always the shortest one; compare the cost of the two
+     * with verticalSeamCost(). One level searches the whole picture and
+     * finds exactly the seam findVerticalSeam() does in double precision;
+     * the pyramid is always searched in doubles, so in float or fixed-point
+     * precision the two may differ where paths nearly tie. The search at
+     * full size uses the full-size shortest-path arrays, even in low-memory
+     * mode.
+     * 
+     * @param levels the number of levels in the energy pyramid
+     * @param band the number of pixels the search may stray to either side
+     *        of the seam found at the level below
+     * @return the sequence of indices for the vertical seam.
+     * @throws IllegalArgumentException if <em>levels</em> or <em>band</em>
+     *         is less than 1.
+     * @see #verticalSeamCost(int[])
+     */
+    public int[] findApproximateVerticalSeam(int levels, int band) {
+        if (levels < 1 || band < 1)
+            throw new java.lang.IllegalArgumentException("Invalid pyramid");
+        
+        orient(false);
+        return findSeamCoarseToFine(new int[height()], levels, band);
+    }
+    
+    /**
+     * Sequence of indices for the shortest horizontal seam that stays within
+     * <em>band</em> pixels of the given one.
+     * 
+     * @param guess the seam to search around
+     * @param band the number of pixels the seam may stray to either side of
+     *        <em>guess</em>
+     * @return the sequence of indices for the horizontal seam.
+     * @throws NullPointerException if <em>guess</em> is {@code null}.
+     * @throws IllegalArgumentException if <em>band</em> is negative, if
+     *         <em>guess</em> does not match the picture width, if an index in
+     *         <em>guess</em> is negative or is taller than the picture, or if
+     *         two adjacent entries in <em>guess</em> differ by more than 1.
+     * @see #findVerticalSeamNear(int[], int)
+     */
+    public int[] findHorizontalSeamNear(int[] guess, int band) {
+        
+        // Check for bad input
+        if (guess == null) throw new java.lang.NullPointerException();
+        if (band < 0)
+            throw new java.lang.IllegalArgumentException("Negative band");
+        if (guess.length != width())
+            throw new java.lang.IllegalArgumentException("Invalid seam length");
+        
+        int yLast = guess[0];
+        for (int y: guess) {
+            if (y >= height() || y < 0)
+                throw new java.lang.IllegalArgumentException("Index out of bounds");
+            if (Math.abs(y - yLast) > 1)
+                throw new java.lang.IllegalArgumentException("Index not adjacent");
+            yLast = y;
+        }
+        
+        orient(true);
+        return findSeamNear(guess, band);
+    }
+    
+    /**
+     * Sequence of indices for the shortest vertical seam that stays within
+     * <em>band</em> pixels of the given one.
+     * 
+     * Only the pixels within the band are relaxed, so when consecutive
+     * pictures are much alike, as the frames of a video are, searching
+     * around the seam found in the last picture is much faster than a full
+     * search, and the seam moves little from one picture to the next. The
+     * seam is the shortest one in the band, which is not always the shortest
+     * one in the picture. The band is searched in doubles whatever the
+     * precision set. A band of 0 gives back the guess.
+     * 
+     * @param guess the seam to search around
+     * @param band the number of pixels the seam may stray to either side of
+     *        <em>guess</em>
+     * @return the sequence of indices for the vertical seam.
+     * @throws NullPointerException if <em>guess</em> is {@code null}.
+     * @throws IllegalArgumentException if <em>band</em> is negative, if
+     *         <em>guess</em> does not match the picture height, if an index in
+     *         <em>guess</em> is negative or is wider than the picture, or if
+     *         two adjacent entries in <em>guess</em> differ by more than 1.
+     * @see #verticalSeamCost(int[])
+     */
+    public int[] findVerticalSeamNear(int[] guess, int band) {
+        
+        // Check for bad input
+        if (guess == null) throw new java.lang.NullPointerException();
+        if (band < 0)
+            throw new java.lang.IllegalArgumentException("Negative band");
+        if (guess.length != height())
+            throw new java.lang.IllegalArgumentException("Invalid seam length");
+        
+        int xLast = guess[0];
+        for (int x: guess) {
+            if (x >= width() || x < 0)
+                throw new java.lang.IllegalArgumentException("Index out of bounds");
+            if (Math.abs(x - xLast) > 1)
+                throw new java.lang.IllegalArgumentException("Index not adjacent");
+            xLast = x;
+        }
+        
+        orient(false);
+        return findSeamNear(guess, band);
+    }
+    
+    /**
+     * Sequences of indices for up to k horizontal seams that share no pixel.
+     * 
+     * @param k the number of seams to find
+     * @return the sequences of indices for the horizontal seams.
+     * @throws IllegalArgumentException if <em>k</em> is negative, or is not
+     *         less than the picture height.
+     * @see #findVerticalSeams(int)
+     */
+    public int[][] findHorizontalSeams(int k) {
+        if (k < 0 || k >= height())
+            throw new java.lang.IllegalArgumentException("Invalid seam count");
+        
+        orient(true);
+        return findSeams(k);
+    }
+    
+    /**
+     * Sequences of indices for up to k vertical seams that share no pixel,
+     * all found with a single search.
+     * 
+     * The search finds the shortest path to every pixel in the bottom row.
+     * The paths are then traced back from the shortest up, each avoiding
+     * the pixels taken by the paths before it: where its parent is taken, a
+     * path turns to the shortest free pixel of the three above it, and a
+     * path with no free pixel above it is dropped. If too many are dropped,
+     * the picture is searched again with the taken pixels shut out, as few
+     * times as it takes. The first seam is the one findVerticalSeam() finds;
+     * the others are only approximately as short as the seams a search after
+     * each removal would find, and they may cross one another, though never
+     * through the same pixel.
+     * 
+     * Fewer than k seams are returned only if the seams already found leave
+     * no way through.
+     * 
+     * @param k the number of seams to find
+     * @return the sequences of indices for the vertical seams, shortest
+     *         first.
+     * @throws IllegalArgumentException if <em>k</em> is negative, or is not
+     *         less than the picture width.
+     * @see #removeVerticalSeams(int[][])
+     */
+    public int[][] findVerticalSeams(int k) {
+        if (k < 0 || k >= width())
+            throw new java.lang.IllegalArgumentException("Invalid seam count");
+        
+        orient(false);
+        return findSeams(k);
+    }
+    
+    /**
+     * Insert the given number of horizontal seams into current picture.
+     * 
+     * @param k the number of seams to insert
+     * @throws IllegalArgumentException if <em>k</em> is negative, or is
+     *         greater than the picture height, or if the taller picture
+     *         would have more pixels than an array can hold.
+     * @see #insertVerticalSeams(int)
+     */
+    public void insertHorizontalSeams(int k) {
+        if (k < 0 || k > height())
+            throw new java.lang.IllegalArgumentException("Invalid seam count");
+        area(width(), height() + k);
+        
+        orient(true);
+        widen(k);
+    }
+    
+    /**
+     * Insert the given number of vertical seams into current picture,
+     * widening it by k pixels.
+     * 
+     * The k seams are found with a single search, as by findVerticalSeams(),
+     * so that each is a different low-energy seam; inserting them one at a
+     * time would find the same seam over and over. Each pixel of a seam gets
+     * a new pixel beside it, to its right, colored the average of the seam
+     * pixel and its neighbor on the right (on the left, at the right edge).
+     * Only the energy of the pixels near the seams is recalculated.
+     * 
+     * Should the search find fewer seams than asked for, the rest are found
+     * by searching the widened picture again.
+     * 
+     * @param k the number of seams to insert
+     * @throws IllegalArgumentException if <em>k</em> is negative, or is
+     *         greater than the picture width, or if the wider picture would
+     *         have more pixels than an array can hold.
+     * @see #findVerticalSeams(int)
+     */
+    public void insertVerticalSeams(int k) {
+        if (k < 0 || k > width())
+            throw new java.lang.IllegalArgumentException("Invalid seam count");
+        area(width() + k, height());
+        
+        orient(false);
+        widen(k);
+    }
+    
+    /**
+     * Total energy of the pixels in a horizontal seam.
+     * 
+     * @param seam the given seam.
+     * @return the sum of the energy of the pixels in the seam.
+     * @throws NullPointerException if the given <em>seam</em> is {@code null}.
+     * @throws IllegalArgumentException if the given <em>seam</em> does not
+     *         match the picture width, or if an index in the given
+     *         <em>seam</em> is negative or is taller than the picture.
+     */
+    public double horizontalSeamCost(int[] seam) {
+        
+        // Check for bad input
+        if (seam == null) throw new java.lang.NullPointerException();
+        if (seam.length != width())
+            throw new java.lang.IllegalArgumentException("Invalid seam length");
+        
+        double cost = 0;
+        for (int x = 0; x < seam.length; x++) {
+            if (seam[x] >= height() || seam[x] < 0)
+                throw new java.lang.IllegalArgumentException("Index out of bounds");
+            cost += energy(x, seam[x]);
+        }
+        return cost;
+    }
+    
+    /**
+     * Total energy of the pixels in a vertical seam.
+     * 
+     * The pixels are summed from the top down, the order a search adds them
+     * in, so the cost of a seam found by findVerticalSeam() is exactly the
+     * length of its path.
+     * 
+     * @param seam the given seam.
+     * @return the sum of the energy of the pixels in the seam.
+     * @throws NullPointerException if the given <em>seam</em> is {@code null}.
+     * @throws IllegalArgumentException if the given <em>seam</em> does not
+     *         match the picture height, or if an index in the given
+     *         <em>seam</em> is negative or is wider than the picture.
+     */
+    public double verticalSeamCost(int[] seam) {
+        
+        // Check for bad input
+        if (seam == null) throw new java.lang.NullPointerException();
+        if (seam.length != height())
+            throw new java.lang.IllegalArgumentException("Invalid seam length");
+        
+        double cost = 0;
+        for (int y = 0; y < seam.length; y++) {
+            if (seam[y] >= width() || seam[y] < 0)
+                throw new java.lang.IllegalArgumentException("Index out of bounds");
+            cost += energy(seam[y], y);
+        }
+        return cost;
+    }
+    
+    /**
+     * Find the shortest path from the top to the bottom of color and energy,
+     * in their current layout, relaxing the rows one after another.
+     * 
+     * @param seam the array to fill with the column of the path in each row
+     * @return <em>seam</em>.
+     */
+    private int[] findSeam(int[] seam) {
+        int rows = rows();
+        int cols = cols();
+        if (metrics != null) metrics.found(1);
+        if (lowMemory) return findSeamCompact(seam);
+        
+        // Paths kept up to date by the removals since the last search
+        // need no relaxing at all
+        if (!pathsValid) {
+            relaxAll(precision);
+            relaxed = (long) rows * cols;
+            pathsValid = incremental;
+        }
+        
+        // Find the end of the shortest path in the bottom row
+        SeamCarverMetrics.Span span = start(SeamCarverMetrics.Phase.BACKTRACK);
+        int row = (rows - 1) * stride;
+        int edgeToSink = cols - 1;
+        double distToSink = distance(row + edgeToSink);
+        for (int j = cols - 2; j >= 0; j--) {
+            if (distToSink > distance(row + j)) {
+                distToSink = distance(row + j);
+                edgeToSink = j;
+            }
+        }
+        
+        // Populate seam[] with the shortest path
+        seam[rows - 1] = edgeToSink;
+        
+        for (int i = rows - 1; i > 0; i--) {
+            seam[i - 1] = seam[i] + edgeTo[i * stride + seam[i]];
+        }
+        end(span);
+        
+        return seam;
+    }
+    
+    /**
+     * Find the shortest path from the top to the bottom of the current
+     * layout, keeping two rows of distances and 2-bit parent codes.
+     * 
+     * Relaxes exactly as relaxRow does, so it finds the same path.
+     * 
+     * @param seam the array to fill, one element per row
+     * @return the column of the path in each row.
+     */
+    private int[] findSeamCompact(int[] seam) {
+        int rows = rows();
+        int cols = cols();
+        
+        if (costUp == null) {
+            costUp = new double[Math.max(w, h)];
+            costRow = new double[costUp.length];
+            parentCodes = new long[(int) (((long) w * h + 31) / 32)];
+        }
+        Arrays.fill(parentCodes, 0, (int) (((long) rows * cols + 31) / 32), 0);
+        
+        // The top row costs only its own energy
+        SeamCarverMetrics.Span span = start(SeamCarverMetrics.Phase.SEARCH);
+        double[] up = costUp;
+        double[] cur = costRow;
+        System.arraycopy(energy, 0, up, 0, cols);
+        
+        for (int i = 1; i < rows; i++) {
+            int row = i * stride;
+            long code = (long) i * cols;
+            for (int j = 0; j < cols; j++) {
+                double e = energy[row + j];
+                double best = Double.POSITIVE_INFINITY;
+                int edge = 0;
+                if (j + 1 < cols) {
+                    best = up[j + 1] + e;
+                    edge = 1;
+                }
+                if (best > up[j] + e) {
+                    best = up[j] + e;
+                    edge = 0;
+                }
+                if (j > 0 && best > up[j - 1] + e) {
+                    best = up[j - 1] + e;
+                    edge = -1;
+                }
+                cur[j] = best;
+                parentCodes[(int) (code >>> 5)] |= (long) (edge + 1) << ((code & 31) << 1);
+                code++;
+            }
+            
+            double[] d = up;
+            up = cur;
+            cur = d;
+        }
+        relaxed = (long) rows * cols;
+        if (metrics != null) metrics.relaxed(relaxed);
+        end(span);
+        
+        // Find the end of the shortest path in the bottom row
+        span = start(SeamCarverMetrics.Phase.BACKTRACK);
+        int edgeToSink = cols - 1;
+        double distToSink = up[edgeToSink];
+        for (int j = cols - 2; j >= 0; j--) {
+            if (distToSink > up[j]) {
+                distToSink = up[j];
+                edgeToSink = j;
+            }
+        }
+        
+        // Populate seam[] with the shortest path
+        seam[rows - 1] = edgeToSink;
+        
+        for (int i = rows - 1; i > 0; i--) {
+            long code = (long) i * cols + seam[i];
+            int edge = (int) (parentCodes[(int) (code >>> 5)] >>> ((code & 31) << 1)) & 3;
+            seam[i - 1] = seam[i] + edge - 1;
+        }
+        end(span);
+        
+        return seam;
+    }
+    
+    /**
+     * Find an approximately shortest path from the top to the bottom of the
+     * current layout, searching an energy pyramid from the smallest level up.
+     * 
+     * @param seam the array to fill, one element per row
+     * @param levels the most levels to build
+     * @param band the number of columns to search either side of the
+     *        doubled path from the level below
+     * @return the column of the path in each row.
+     */
+    private int[] findSeamCoarseToFine(int[] seam, int levels, int band) {
+        SeamCarverMetrics.Span span = start(SeamCarverMetrics.Phase.SEARCH);
+        if (metrics != null) metrics.found(1);
+        
+        // Level 0 is the energy itself; each level above it averages 2-by-2
+        // blocks of the one below, while both sides have room to halve
+        double[][] pyramid = new double[levels][];
+        int[] rows = new int[levels];
+        int[] cols = new int[levels];
+        pyramid[0] = energy;
+        rows[0] = rows();
+        cols[0] = cols();
+        
+        int top = 0;
+        while (top + 1 < levels && rows[top] >= 2 && cols[top] >= 2) {
+            int s = top == 0 ? stride : cols[top];
+            top++;
+            rows[top] = (rows[top - 1] + 1) / 2;
+            cols[top] = (cols[top - 1] + 1) / 2;
+            pyramid[top] = halve(pyramid[top - 1], s, rows[top - 1], cols[top - 1]);
+        }
+        
+        // The levels above 0 share scratch space big enough for level 1
+        double[] dist = null;
+        byte[] edge = null;
+        if (top > 0) {
+            dist = new double[rows[1] * cols[1]];
+            edge = new byte[dist.length];
+        }
+        
+        // Search the whole of the smallest level, then bands above it
+        int[] lo = new int[rows[0]];
+        int[] hi = new int[rows[0]];
+        Arrays.fill(hi, 0, rows[top], cols[top] - 1);
+        int[] path = null;
+        
+        for (int l = top; l >= 0; l--) {
+            if (l < top) {
+                for (int i = 0; i < rows[l]; i++) {
+                    int c = 2 * path[i / 2];
+                    lo[i] = Math.max(c - band, 0);
+                    hi[i] = Math.min(c + 1 + band, cols[l] - 1);
+                }
+            }
+            
+            if (l > 0) {
+                path = findSeamInBand(pyramid[l], cols[l], rows[l], lo, hi,
+                                      dist, edge, new int[rows[l]]);
+            }
+            else {
+                allocateShortestPaths(Precision.DOUBLE);
+                pathsValid = false;
+                path = findSeamInBand(energy, stride, rows[0], lo, hi,
+                                      distTo, edgeTo, seam);
+            }
+        }
+        end(span);
+        
+        return path;
+    }
+    
+    /**
+     * Find the shortest path from the top to the bottom of the current
+     * layout within band columns of the given path.
+     * 
+     * @param guess the column of the path to search around in each row
+     * @param band the number of columns to search either side of it
+     * @return the column of the path in each row.
+     */
+    private int[] findSeamNear(int[] guess, int band) {
+        int rows = rows();
+        int cols = cols();
+        SeamCarverMetrics.Span span = start(SeamCarverMetrics.Phase.SEARCH);
+        
+        int[] lo = new int[rows];
+        int[] hi = new int[rows];
+        relaxed = 0;
+        for (int i = 0; i < rows; i++) {
+            lo[i] = Math.max(guess[i] - band, 0);
+            hi[i] = Math.min(guess[i] + band, cols - 1);
+            relaxed += hi[i] - lo[i] + 1;
+        }
+        
+        allocateShortestPaths(Precision.DOUBLE);
+        pathsValid = false;
+        int[] seam = findSeamInBand(energy, stride, rows, lo, hi,
+                                    distTo, edgeTo, new int[rows]);
+        if (metrics != null) {
+            metrics.relaxed(relaxed);
+            metrics.found(1);
+        }
+        end(span);
+        
+        return seam;
+    }
+    
+    /**
+     * Average the values of a grid over 2-by-2 blocks.
+     * 
+     * Blocks cut short by an odd side average the values they have.
+     * 
+     * @param grid the values, row after row
+     * @param stride the distance between the starts of rows in grid
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @return the averages, in rows of (cols + 1) / 2.
+     */
+    private static double[] halve(double[] grid, int stride, int rows, int cols) {
+        int halfRows = (rows + 1) / 2;
+        int halfCols = (cols + 1) / 2;
+        double[] half = new double[halfRows * halfCols];
+        
+        for (int i = 0; i < halfRows; i++) {
+            int a = 2 * i * stride;
+            int b = 2 * i + 1 < rows ? a + stride : a;
+            for (int j = 0; j < halfCols; j++) {
+                int x = 2 * j;
+                int y = x + 1 < cols ? x + 1 : x;
+                half[i * halfCols + j] =
+                    (grid[a + x] + grid[a + y] + grid[b + x] + grid[b + y]) / 4;
+            }
+        }
+        return half;
+    }
+    
+    /**
+     * Find the shortest path from the top to the bottom of a grid that stays
+     * within columns lo[i] through hi[i] of each row i.
+     * 
+     * Pixels are relaxed as relaxRow does, with parents outside the band of
+     * the row above left out, so with bands spanning the whole grid the path
+     * is exactly the one findSeam finds. The bands of adjacent rows must
+     * overlap.
+     * 
+     * @param grid the energy, row after row
+     * @param stride the distance between the starts of rows in grid, also
+     *        used for dist and edge
+     * @param rows the number of rows
+     * @param lo the first column to search in each row
+     * @param hi the last column to search in each row
+     * @param dist scratch space for the distances
+     * @param edge scratch space for the parent offsets
+     * @param seam the array to fill, one element per row
+     * @return the column of the path in each row.
+     */
+    private static int[] findSeamInBand(double[] grid, int stride, int rows,
+                                        int[] lo, int[] hi, double[] dist,
+                                        byte[] edge, int[] seam) {
+        
+        // The top row costs only its own energy
+        for (int j = lo[0]; j <= hi[0]; j++) {
+            dist[j] = grid[j];
+            edge[j] = 0;
+        }
+        
+        for (int i = 1; i < rows; i++) {
+            int row = i * stride;
+            int up = row - stride;
+            int upLo = lo[i - 1];
+            int upHi = hi[i - 1];
+            
+            for (int j = lo[i]; j <= hi[i]; j++) {
+                double e = grid[row + j];
+                double best = Double.POSITIVE_INFINITY;
+                byte parent = 0;
+                if (j + 1 >= upLo && j + 1 <= upHi) {
+                    best = dist[up + j + 1] + e;
+                    parent = 1;
+                }
+                if (j >= upLo && j <= upHi && best > dist[up + j] + e) {
+                    best = dist[up + j] + e;
+                    parent = 0;
+                }
+                if (j - 1 >= upLo && j - 1 <= upHi && best > dist[up + j - 1] + e) {
+                    best = dist[up + j - 1] + e;
+                    parent = -1;
+                }
+                dist[row + j] = best;
+                edge[row + j] = parent;
+            }
+        }
+        
+        // Find the end of the shortest path in the bottom row
+        int row = (rows - 1) * stride;
+        int edgeToSink = hi[rows - 1];
+        double distToSink = dist[row + edgeToSink];
+        for (int j = edgeToSink - 1; j >= lo[rows - 1]; j--) {
+            if (distToSink > dist[row + j]) {
+                distToSink = dist[row + j];
+                edgeToSink = j;
+            }
+        }
+        
+        // Populate seam[] with the shortest path
+        seam[rows - 1] = edgeToSink;
+        
+        for (int i = rows - 1; i > 0; i--) {
+            seam[i - 1] = seam[i] + edge[i * stride + seam[i]];
+        }
+        
+        return seam;
+    }
+    
+    /**
+     * Relax every pixel in the current layout, from the top row down.
+     * 
+     * @param p the precision to keep the distances in
+     */
+    private void relaxAll(Precision p) {
+        int rows = rows();
+        int cols = cols();
+        SeamCarverMetrics.Span span = start(SeamCarverMetrics.Phase.SEARCH);
+        allocateShortestPaths(p);
+        
+        // The top row costs only its own energy
+        relaxTop(p, 0, cols);
+        
+        int chunks = 1;
+        if (pool != null) chunks = Math.min(pool.getParallelism(), cols / MIN_CHUNK);
+        
+        if (chunks > 1) {
+            pool.invoke(new RowSweep(chunks, p));
+        }
+        else {
+            for (int i = 1; i < rows; i++) {
+                relax(p, i, 0, cols);
+            }
+        }
+        if (metrics != null) metrics.relaxed((long) rows * cols);
+        end(span);
+    }
+    
+    /**
+     * Make sure the shortest-path arrays of the given precision exist.
+     * 
+     * They share the layout of the energy array, so they are allocated once
+     * and reused by every later search, until inserted seams outgrow them.
+     * 
+     * @param p the precision of the distances
+     */
+    private void allocateShortestPaths(Precision p) {
+        if (edgeTo == null) edgeTo = new byte[energy.length];
+        if (p == Precision.FLOAT) {
+            if (distToFloat == null) distToFloat = new float[energy.length];
+        }
+        else if (p == Precision.FIXED) {
+            if (distToFixed == null) distToFixed = new int[energy.length];
+        }
+        else if (distTo == null) {
+            distTo = new double[energy.length];
+        }
+    }
+    
+    /**
+     * The distance to the pixel at the given index that the last search in
+     * the current precision found, counted in that precision's units.
+     * 
+     * @param index the index of the pixel in the current layout
+     * @return the length of the shortest path to the pixel.
+     */
+    private double distance(int index) {
+        if (precision == Precision.FLOAT) return distToFloat[index];
+        if (precision == Precision.FIXED) return distToFixed[index];
+        return distTo[index];
+    }
+    
+    /**
+     * Copy the energy of every pixel in the current layout into the energy
+     * plane of the current precision, letting the planes of the other
+     * precisions go.
+     */
+    private void narrowEnergy() {
+        if (precision != Precision.FLOAT) energyFloat = null;
+        if (precision != Precision.FIXED) energyFixed = null;
+        if (precision == Precision.FLOAT) {
+            if (energyFloat == null || energyFloat.length < energy.length)
+                energyFloat = new float[energy.length];
+        }
+        else if (precision == Precision.FIXED) {
+            if (energyFixed == null || energyFixed.length < energy.length)
+                energyFixed = new int[energy.length];
+            
+            // Seams only grow the picture through insertTogether, which
+            // narrows the energy again, so the cap holds until then
+            fixedCap = Integer.MAX_VALUE / Math.max(Math.max(w, h), 1);
+        }
+        else return;
+        
+        int rows = rows();
+        int cols = cols();
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) narrowEnergy(i * stride + j);
+        }
+    }
+    
+    /**
+     * Copy the energy of the pixel at the given index into the energy plane
+     * of the current precision, if it is reduced: as a float, or rounded to
+     * a multiple of 1 / FIXED_SCALE and capped.
+     * 
+     * @param index the index of the pixel in the current layout
+     */
+    private void narrowEnergy(int index) {
+        if (energyFloat != null)
+            energyFloat[index] = (float) energy[index];
+        else if (energyFixed != null)
+            energyFixed[index] = (int) Math.min(energy[index] * FIXED_SCALE + 0.5, fixedCap);
+    }
+    
+    /**
+     * Start the paths at columns lo through hi - 1 of the top row, each
+     * costing only the energy of its first pixel.
+     * 
+     * @param p the precision to keep the distances in
+     * @param lo the first column to start
+     * @param hi one past the last column to start
+     */
+    private void relaxTop(Precision p, int lo, int hi) {
+        if (p == Precision.FLOAT) {
+            System.arraycopy(energyFloat, lo, distToFloat, lo, hi - lo);
+        }
+        else if (p == Precision.FIXED) {
+            System.arraycopy(energyFixed, lo, distToFixed, lo, hi - lo);
+        }
+        else {
+            System.arraycopy(energy, lo, distTo, lo, hi - lo);
+        }
+        Arrays.fill(edgeTo, lo, hi, (byte) 0);
+    }
+    
+    /**
+     * Relax the pixels in columns lo through hi - 1 of row i, keeping the
+     * distances in the given precision.
+     * 
+     * @param p the precision to keep the distances in
+     * @param i the index of the row in the current layout, which must be
+     *        positive
+     * @param lo the first column to relax
+     * @param hi one past the last column to relax
+     */
+    private void relax(Precision p, int i, int lo, int hi) {
+        if (p == Precision.FLOAT) relaxRowFloat(i, lo, hi);
+        else if (p == Precision.FIXED) relaxRowFixed(i, lo, hi);
+        else relaxRow(i, lo, hi);
+    }
+    
+    /**
+     * Relax the pixels in columns lo through hi - 1 of row i from the already
+     * relaxed row above it.
+     * 
+     * The parents of each pixel are tried right, middle, then left, and a
+     * later parent only replaces an earlier one when it is strictly shorter.
+     * 
+     * @param i the index of the row in the current layout, which must be
+     *        positive
+     * @param lo the first column to relax
+     * @param hi one past the last column to relax
+     */
+    private void relaxRow(int i, int lo, int hi) {
+        int row = i * stride;
+        int up = row - stride;
+        int last = cols() - 1;
+        
+        // A single column has nowhere to go but straight down
+        if (last == 0) {
+            distTo[row] = distTo[up] + energy[row];
+            edgeTo[row] = 0;
+            return;
+        }
+        
+        double e;
+        double best;
+        byte edge;
+        
+        // Left edge; reached from above and from above to the right
+        if (lo == 0) {
+            e = energy[row];
+            best = distTo[up + 1] + e;
+            edge = 1;
+            if (best > distTo[up] + e) {
+                best = distTo[up] + e;
+                edge = 0;
+            }
+            distTo[row] = best;
+            edgeTo[row] = edge;
+            lo = 1;
+        }
+        
+        // Middle pixels; reached from all three parents
+        int end = Math.min(hi, last);
+        for (int j = lo; j < end; j++) {
+            e = energy[row + j];
+            best = distTo[up + j + 1] + e;
+            edge = 1;
+            if (best > distTo[up + j] + e) {
+                best = distTo[up + j] + e;
+                edge = 0;
+            }
+            if (best > distTo[up + j - 1] + e) {
+                best = distTo[up + j - 1] + e;
+                edge = -1;
+            }
+            distTo[row + j] = best;
+            edgeTo[row + j] = edge;
+        }
+        
+        // Right edge; reached from above and from above to the left
+        if (hi > last) {
+            e = energy[row + last];
+            best = distTo[up + last] + e;
+            edge = 0;
+            if (best > distTo[up + last - 1] + e) {
+                best = distTo[up + last - 1] + e;
+                edge = -1;
+            }
+            distTo[row + last] = best;
+            edgeTo[row + last] = edge;
+        }
+    }
+    
+    /**
+     * Relax columns lo through hi - 1 of row i as relaxRow does, with the
+     * energy read from energyFloat and the distances kept in distToFloat.
+     * 
+     * @param i the index of the row in the current layout, which must be
+     *        positive
+     * @param lo the first column to relax
+     * @param hi one past the last column to relax
+     */
+    private void relaxRowFloat(int i, int lo, int hi) {
+        float[] dist = distToFloat;
+        float[] energy = energyFloat;
+        int row = i * stride;
+        int up = row - stride;
+        int last = cols() - 1;
+        
+        // A single column has nowhere to go but straight down
+        if (last == 0) {
+            dist[row] = dist[up] + energy[row];
+            edgeTo[row] = 0;
+            return;
+        }
+        
+        float e;
+        float best;
+        byte edge;
+        
+        // Left edge; reached from above and from above to the right
+        if (lo == 0) {
+            e = energy[row];
+            best = dist[up + 1] + e;
+            edge = 1;
+            if (best > dist[up] + e) {
+                best = dist[up] + e;
+                edge = 0;
+            }
+            dist[row] = best;
+            edgeTo[row] = edge;
+            lo = 1;
+        }
+        
+        // Middle pixels; reached from all three parents
+        int end = Math.min(hi, last);
+        for (int j = lo; j < end; j++) {
+            e = energy[row + j];
+            best = dist[up + j + 1] + e;
+            edge = 1;
+            if (best > dist[up + j] + e) {
+                best = dist[up + j] + e;
+                edge = 0;
+            }
+            if (best > dist[up + j - 1] + e) {
+                best = dist[up + j - 1] + e;
+                edge = -1;
+            }
+            dist[row + j] = best;
+            edgeTo[row + j] = edge;
+        }
+        
+        // Right edge; reached from above and from above to the left
+        if (hi > last) {
+            e = energy[row + last];
+            best = dist[up + last] + e;
+            edge = 0;
+            if (best > dist[up + last - 1] + e) {
+                best = dist[up + last - 1] + e;
+                edge = -1;
+            }
+            dist[row + last] = best;
+            edgeTo[row + last] = edge;
+        }
+    }
+    
+    /**
+     * Relax columns lo through hi - 1 of row i as relaxRow does, with the
+     * energy read from energyFixed and the distances kept in distToFixed.
+     * 
+     * @param i the index of the row in the current layout, which must be
+     *        positive
+     * @param lo the first column to relax
+     * @param hi one past the last column to relax
+     */
+    private void relaxRowFixed(int i, int lo, int hi) {
+        int[] dist = distToFixed;
+        int[] energy = energyFixed;
+        int row = i * stride;
+        int up = row - stride;
+        int last = cols() - 1;
+        
+        // A single column has nowhere to go but straight down
+        if (last == 0) {
+            dist[row] = dist[up] + energy[row];
+            edgeTo[row] = 0;
+            return;
+        }
+        
+        int e;
+        int best;
+        byte edge;
+        
+        // Left edge; reached from above and from above to the right
+        if (lo == 0) {
+            e = energy[row];
+            best = dist[up + 1] + e;
+            edge = 1;
+            if (best > dist[up] + e) {
+                best = dist[up] + e;
+                edge = 0;
+            }
+            dist[row] = best;
+            edgeTo[row] = edge;
+            lo = 1;
+        }
+        
+        // Middle pixels; reached from all three parents
+        int end = Math.min(hi, last);
+        for (int j = lo; j < end; j++) {
+            e = energy[row + j];
+            best = dist[up + j + 1] + e;
+            edge = 1;
+            if (best > dist[up + j] + e) {
+                best = dist[up + j] + e;
+                edge = 0;
+            }
+            if (best > dist[up + j - 1] + e) {
+                best = dist[up + j - 1] + e;
+                edge = -1;
+            }
+            dist[row + j] = best;
+            edgeTo[row + j] = edge;
+        }
+        
+        // Right edge; reached from above and from above to the left
+        if (hi > last) {
+            e = energy[row + last];
+            best = dist[up + last] + e;
+            edge = 0;
+            if (best > dist[up + last - 1] + e) {
+                best = dist[up + last - 1] + e;
+                edge = -1;
+            }
+            dist[row + last] = best;
+            edgeTo[row + last] = edge;
+        }
+    }
+    
+    /**
+     * Relaxes every row below the top one, with the columns split into
+     * chunks that are relaxed side by side.
+     * 
+     * Each chunk only reads the row above, so the chunks of one row are
+     * independent; a phaser holds every chunk back until the whole row is
+     * done. The phaser blocks through the pool, which adds threads if it has
+     * fewer free than there are chunks.
+     */
+    private class RowSweep extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int chunks;
+        private final Precision precision;
+        
+        RowSweep(int chunks, Precision precision) {
+            this.chunks = chunks;
+            this.precision = precision;
+        }
+        
+        @Override
+        protected void compute() {
+            int cols = cols();
+            Phaser barrier = new Phaser(chunks);
+            RecursiveAction[] tasks = new RecursiveAction[chunks];
+            for (int c = 0; c < chunks; c++) {
+                int lo = (int) ((long) cols * c / chunks);
+                int hi = (int) ((long) cols * (c + 1) / chunks);
+                tasks[c] = new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        for (int i = 1; i < rows(); i++) {
+                            relax(precision, i, lo, hi);
+                            barrier.arriveAndAwaitAdvance();
+                        }
+                    }
+                };
+            }
+            invokeAll(tasks);
+        }
+    }
+    
+    /**
+     * Remove horizontal seam from current picture.
+     * 
+     * @param seam the given seam.
+     * @throws NullPointerException if the given <em>seam</em> is {@code null}.
+     * @throws IllegalArgumentException if the given <em>seam</em> does not
+     *         match the picture width, if an index in the given <em>seam</em>
+     *         is negative or is taller than the picture, or if two adjacent
+     *         entries in the given <em>seam</em> differ by more than 1.
+     */
+    public void removeHorizontalSeam(int[] seam) {
+        
+        // Check for bad input
+        if (height() <= 1)
+            throw new java.lang.IllegalArgumentException("Picture too short");
+        if (seam == null) throw new java.lang.NullPointerException();
+        if (seam.length != width())
+            throw new java.lang.IllegalArgumentException("Invalid seam length");
+        
+        int yLast = seam[0];
+        for (int y: seam) {
+            if (y >= height() || y < 0)
+                throw new java.lang.IllegalArgumentException("Index out of bounds");
+            if (Math.abs(y - yLast) > 1)
                 throw new java.lang.IllegalArgumentException("Index not adjacent");
             yLast = y;
         }
         
-        // Create replacement arrays
-        int[][] newColor = new int[height() - 1][width()];
-        double[][] newEnergy = new double[height() - 1][width()];
+        orient(true);
+        carve(seam);
+    }
+    
+    /**
+     * Remove vertical seam from current picture.
+     * 
+     * @param seam the given seam.
+     * @throws NullPointerException if the given <em>seam</em> is {@code null}.
+     * @throws IllegalArgumentException if the given <em>seam</em> does not
+     *         match the picture height, if an index in the given <em>seam</em>
+     *         is negative or is wider than the picture, or if two adjacent
+     *         entries in the given <em>seam</em> differ by more than 1.
+     */
+    public void removeVerticalSeam(int[] seam) {
+        
+        // Check for bad input
+        if (width() <= 1)
+            throw new java.lang.IllegalArgumentException("Picture too narrow");
+        if (seam == null) throw new java.lang.NullPointerException();
+        if (seam.length != height())
+            throw new java.lang.IllegalArgumentException("Invalid seam length");
+        
+        int xLast = seam[0];
+        for (int x: seam) {
+            if (x >= width() || x < 0)
+                throw new java.lang.IllegalArgumentException("Index out of bounds");
+            if (Math.abs(x - xLast) > 1)
+                throw new java.lang.IllegalArgumentException("Index not adjacent");
+            xLast = x;
+        }
+        
+        orient(false);
+        carve(seam);
+    }
+    
+    /**
+     * Remove the given number of horizontal seams from current picture.
+     * 
+     * The result is exactly that of finding and removing one horizontal seam
+     * after another, and the shortest paths are kept between the seams of
+     * the batch as in incremental mode. Each seam is taken out of the
+     * picture as soon as it is found, unless a checkpoint interval above 1
+     * is set.
+     * 
+     * @param k the number of seams to remove
+     * @throws IllegalArgumentException if <em>k</em> is negative, or is not
+     *         less than the picture height.
+     * @see #setCheckpointInterval(int)
+     */
+    public void removeHorizontalSeams(int k) {
+        if (k < 0 || k >= height())
+            throw new java.lang.IllegalArgumentException("Invalid seam count");
+        
+        orient(true);
+        carveSeams(k);
+    }
+    
+    /**
+     * Remove the given number of vertical seams from current picture.
+     * 
+     * The result is exactly that of finding and removing one vertical seam
+     * after another, and the shortest paths are kept between the seams of
+     * the batch as in incremental mode. Each seam is taken out of the
+     * picture as soon as it is found, unless a checkpoint interval above 1
+     * is set.
+     * 
+     * @param k the number of seams to remove
+     * @throws IllegalArgumentException if <em>k</em> is negative, or is not
+     *         less than the picture width.
+     * @see #setCheckpointInterval(int)
+     */
+    public void removeVerticalSeams(int k) {
+        if (k < 0 || k >= width())
+            throw new java.lang.IllegalArgumentException("Invalid seam count");
+        
+        orient(false);
+        carveSeams(k);
+    }
+    
+    /**
+     * Remove the given horizontal seams from current picture all at once.
+     * 
+     * @param seams the given seams, which may share no pixel
+     * @throws NullPointerException if <em>seams</em> or any seam in it is
+     *         {@code null}.
+     * @throws IllegalArgumentException if there are not fewer seams than the
+     *         picture height, if any seam is invalid for the picture as
+     *         removeHorizontalSeam() checks it, or if two seams share a pixel.
+     * @see #removeVerticalSeams(int[][])
+     */
+    public void removeHorizontalSeams(int[][] seams) {
+        
+        // Check for bad input
+        if (seams == null) throw new java.lang.NullPointerException();
+        if (seams.length >= height())
+            throw new java.lang.IllegalArgumentException("Invalid seam count");
+        for (int[] seam: seams) {
+            if (seam == null) throw new java.lang.NullPointerException();
+            if (seam.length != width())
+                throw new java.lang.IllegalArgumentException("Invalid seam length");
+            
+            int yLast = seam[0];
+            for (int y: seam) {
+                if (y >= height() || y < 0)
+                    throw new java.lang.IllegalArgumentException("Index out of bounds");
+                if (Math.abs(y - yLast) > 1)
+                    throw new java.lang.IllegalArgumentException("Index not adjacent");
+                yLast = y;
+            }
+        }
+        
+        orient(true);
+        carveTogether(seams);
+    }
+    
+    /**
+     * Remove the given vertical seams from current picture all at once.
+     * 
+     * Each row is closed up in a single pass, and only the energy of pixels
+     * near a seam is recalculated, so removing seams found together by
+     * findVerticalSeams() costs about as much as removing one of them.
+     * 
+     * @param seams the given seams, which may share no pixel
+     * @throws NullPointerException if <em>seams</em> or any seam in it is
+     *         {@code null}.
+     * @throws IllegalArgumentException if there are not fewer seams than the
+     *         picture width, if any seam is invalid for the picture as
+     *         removeVerticalSeam() checks it, or if two seams share a pixel.
+     * @see #findVerticalSeams(int)
+     */
+    public void removeVerticalSeams(int[][] seams) {
+        
+        // Check for bad input
+        if (seams == null) throw new java.lang.NullPointerException();
+        if (seams.length >= width())
+            throw new java.lang.IllegalArgumentException("Invalid seam count");
+        for (int[] seam: seams) {
+            if (seam == null) throw new java.lang.NullPointerException();
+            if (seam.length != height())
+                throw new java.lang.IllegalArgumentException("Invalid seam length");
+            
+            int xLast = seam[0];
+            for (int x: seam) {
+                if (x >= width() || x < 0)
+                    throw new java.lang.IllegalArgumentException("Index out of bounds");
+                if (Math.abs(x - xLast) > 1)
+                    throw new java.lang.IllegalArgumentException("Index not adjacent");
+                xLast = x;
+            }
+        }
+        
+        orient(false);
+        carveTogether(seams);
+    }
+    
+    /**
+     * Remove the given number of horizontal seams from current picture,
+     * searching bands of rows side by side.
+     * 
+     * @param k the number of seams to remove
+     * @param bands the number of bands to split the picture into
+     * @throws IllegalArgumentException if <em>k</em> is negative, or is not
+     *         less than the picture height, or if <em>bands</em> is less
+     *         than 1.
+     * @see #removeVerticalSeamsInBands(int, int)
+     */
+    public void removeHorizontalSeamsInBands(int k, int bands) {
+        if (k < 0 || k >= height())
+            throw new java.lang.IllegalArgumentException("Invalid seam count");
+        if (bands < 1)
+            throw new java.lang.IllegalArgumentException("Invalid band count");
+        
+        orient(true);
+        carveInBands(k, bands);
+    }
+    
+    /**
+     * Remove the given number of vertical seams from current picture,
+     * searching bands of columns side by side.
+     * 
+     * The picture is split into bands of columns, and each band is searched
+     * on its own for the shortest seam that stays inside it, all of them at
+     * once on the pool set by setParallelism(), with no barrier between
+     * rows. The seams of all the bands are then removed together, and the
+     * next round splits the narrower picture again, shifting the boundaries
+     * by half a band every other round so that seams can cross them over
+     * time. A round whose bands would remove too many seams removes the
+     * shortest of them.
+     * 
+     * The seams are only approximately as short as the ones a search of the
+     * whole picture finds; one band carves exactly as findVerticalSeam() and
+     * removeVerticalSeam() do, one seam a round. Bands narrower than two
+     * columns are not used.
+     * 
+     * @param k the number of seams to remove
+     * @param bands the number of bands to split the picture into
+     * @throws IllegalArgumentException if <em>k</em> is negative, or is not
+     *         less than the picture width, or if <em>bands</em> is less
+     *         than 1.
+     * @see #setParallelism(int)
+     */
+    public void removeVerticalSeamsInBands(int k, int bands) {
+        if (k < 0 || k >= width())
+            throw new java.lang.IllegalArgumentException("Invalid seam count");
+        if (bands < 1)
+            throw new java.lang.IllegalArgumentException("Invalid band count");
+        
+        orient(false);
+        carveInBands(k, bands);
+    }
+    
+    /**
+     * Set how many seams a batch removal may take out of the energy before it
+     * takes them out of the stored colors as well.
+     * 
+     * Only the colors are compacted late, in one pass over the picture at
+     * each checkpoint. The energy and the shortest paths are still closed up
+     * after every seam, since the next search sweeps them row by row and
+     * needs each row contiguous. Longer intervals move the colors less
+     * often, but make the energy of the pixels near each seam slower to
+     * recalculate in between, since every color read then has to look past
+     * the pending seams. With the dual-gradient energy the recalculation
+     * costs more than the moves save, so the colors are compacted after
+     * every seam by default.
+     * 
+     * @param seams the number of seams between checkpoints; 1 by default
+     * @throws IllegalArgumentException if <em>seams</em> is less than 1.
+     */
+    public void setCheckpointInterval(int seams) {
+        if (seams < 1)
+            throw new java.lang.IllegalArgumentException("Interval below 1");
+        checkpoint = seams;
+    }
+    
+    /**
+     * Find and remove k seams running down the rows of the current layout,
+     * deferring the removal from color to checkpoints if the interval is
+     * above 1.
+     * 
+     * @param k the number of seams to remove
+     */
+    private void carveSeams(int k) {
+        int rows = rows();
+        if (checkpoint > 1 && (pendingSeams == null
+                || pendingSeams.length < checkpoint * rows))
+            pendingSeams = new int[checkpoint * rows];
+        
+        if (!pathsValid && !lowMemory) {
+            relaxAll(precision);
+            relaxed = (long) rows * cols();
+            pathsValid = true;
+        }
+        
+        int[] seam = new int[rows];
+        deferring = checkpoint > 1;
+        try {
+            for (int n = 0; n < k; n++) {
+                if (pending == checkpoint) flushSeams();
+                carve(findSeam(seam));
+            }
+            flushSeams();
+        }
+        finally {
+            deferring = false;
+        }
+        pathsValid = incremental && !lowMemory;
+    }
+    
+    /**
+     * Find up to k paths from the top to the bottom of the current layout
+     * that share no pixel.
+     * 
+     * The first search relaxes the picture as findSeam does, and as many
+     * paths as possible are traced from it. While paths are still missing,
+     * the picture is searched again with the pixels already taken shut out.
+     * 
+     * @param k the number of paths to find
+     * @return the column of each path in each row, shortest path first.
+     */
+    private int[][] findSeams(int k) {
+        int rows = rows();
+        int cols = cols();
+        
+        // Paths in reduced precision are searched again in double
+        if (!pathsValid || precision != Precision.DOUBLE) {
+            relaxAll(Precision.DOUBLE);
+            relaxed = (long) rows * cols;
+            pathsValid = incremental && !lowMemory && precision == Precision.DOUBLE;
+        }
+        
+        long[] taken = new long[(int) (((long) rows * cols + 63) >>> 6)];
+        int[][] seams = new int[k][];
+        int found = traceSeams(taken, seams, 0);
+        
+        if (found < k) {
+            
+            // Search again with the taken pixels costing too much to cross
+            double[] open = Arrays.copyOf(energy, energy.length);
+            int[] lo = new int[rows];
+            int[] hi = new int[rows];
+            Arrays.fill(hi, cols - 1);
+            int[] scratch = new int[rows];
+            pathsValid = false;
+            
+            int shut = 0;
+            while (found < k) {
+                for (int t = shut; t < found; t++) {
+                    for (int i = 0; i < rows; i++) {
+                        open[i * stride + seams[t][i]] = Double.POSITIVE_INFINITY;
+                    }
+                }
+                shut = found;
+                SeamCarverMetrics.Span span = start(SeamCarverMetrics.Phase.SEARCH);
+                findSeamInBand(open, stride, rows, lo, hi, distTo, edgeTo, scratch);
+                relaxed += (long) rows * cols;
+                if (metrics != null) metrics.relaxed((long) rows * cols);
+                end(span);
+                
+                int more = traceSeams(taken, seams, found);
+                if (more == found) break;
+                found = more;
+            }
+        }
+        
+        if (metrics != null) metrics.found(found);
+        return found == k ? seams : Arrays.copyOf(seams, found);
+    }
+    
+    /**
+     * Trace paths back from the ends in the bottom row, shortest first and,
+     * among equals, right-most first, each avoiding the pixels taken by the
+     * paths before it.
+     * 
+     * Where its parent is taken, a path turns to the shortest free pixel of
+     * the three above it; a path with no free pixel above it, or no finite
+     * length, is dropped.
+     * 
+     * @param taken the pixels already taken, a bit per pixel, row by row;
+     *        updated with the pixels of the new paths
+     * @param seams the paths found so far, filled in with the new ones
+     * @param found the number of paths found so far
+     * @return the number of paths found in all.
+     */
+    private int traceSeams(long[] taken, int[][] seams, int found) {
+        int rows = rows();
+        int cols = cols();
+        SeamCarverMetrics.Span span = start(SeamCarverMetrics.Phase.BACKTRACK);
+        
+        int bottom = (rows - 1) * stride;
+        Integer[] ends = new Integer[cols];
+        for (int j = 0; j < cols; j++) ends[j] = j;
+        Arrays.sort(ends, (a, b) -> {
+            int c = Double.compare(distTo[bottom + a], distTo[bottom + b]);
+            return c != 0 ? c : Integer.compare(b, a);
+        });
+        
+        for (int e = 0; e < cols && found < seams.length; e++) {
+            if (distTo[bottom + ends[e]] == Double.POSITIVE_INFINITY) break;
+            if (isTaken(taken, (long) (rows - 1) * cols + ends[e])) continue;
+            
+            int[] seam = new int[rows];
+            seam[rows - 1] = ends[e];
+            
+            boolean free = true;
+            for (int i = rows - 1; i > 0 && free; i--) {
+                int s = seam[i];
+                int parent = s + edgeTo[i * stride + s];
+                
+                // Turn to the shortest free parent, right-most among equals
+                if (isTaken(taken, (long) (i - 1) * cols + parent)) {
+                    parent = -1;
+                    int up = (i - 1) * stride;
+                    for (int j = Math.min(s + 1, cols - 1); j >= Math.max(s - 1, 0); j--) {
+                        if (isTaken(taken, (long) (i - 1) * cols + j)) continue;
+                        if (parent < 0 || distTo[up + parent] > distTo[up + j])
+                            parent = j;
+                    }
+                    free = parent >= 0;
+                }
+                seam[i - 1] = parent;
+            }
+            if (!free) continue;
+            
+            for (int i = 0; i < rows; i++) {
+                long bit = (long) i * cols + seam[i];
+                taken[(int) (bit >>> 6)] |= 1L << bit;
+            }
+            seams[found++] = seam;
+        }
+        end(span);
+        
+        return found;
+    }
+    
+    /**
+     * Insert k paths running down the rows of the current layout, found a
+     * search at a time.
+     * 
+     * @param k the number of paths to insert
+     */
+    private void widen(int k) {
+        while (k > 0) {
+            int[][] seams = findSeams(k);
+            insertTogether(seams);
+            k -= seams.length;
+        }
+    }
+    
+    /**
+     * Insert a pixel after each pixel of the given seams, moving color and
+     * energy to larger buffers, then recalculate the energy of the pixels
+     * near the new ones.
+     * 
+     * A pixel's energy can only change if a new pixel lands in the square its
+     * energy is calculated from, or a seam passes through that square in a
+     * row above or below and shifts the pixels there differently; so, as in
+     * carveTogether, each seam pixel marks the old columns within the radius
+     * of it, in the rows within the radius of it.
+     * 
+     * @param seams the columns of the seams in each row, which share no pixel
+     */
+    private void insertTogether(int[][] seams) {
+        int rows = rows();
+        int cols = cols();
+        int k = seams.length;
+        int wider = cols + k;
+        
+        int[] cuts = new int[rows * k];
+        for (int i = 0; i < rows; i++) {
+            for (int m = 0; m < k; m++) cuts[i * k + m] = seams[m][i];
+            Arrays.sort(cuts, i * k, i * k + k);
+        }
         
-        // Populate replacement arrays, skipping pixels in the seam
-        for (int j = 0; j < width(); j++) {
-            int s = seam[j];
-            for (int i = 0; i < s; i++) {
-                newColor[i][j] = color[i][j];
-                newEnergy[i][j] = energy[i][j];
-            }
-            
-            for (int i = s + 1; i < height(); i++) {
-                newColor[i - 1][j] = color[i][j];
-                newEnergy[i - 1][j] = energy[i][j];
+        // Copy each row into the larger buffers, a new pixel after each cut
+        SeamCarverMetrics.Span span = start(SeamCarverMetrics.Phase.COMPACTION);
+        int[] c = new int[rows * wider];
+        double[] e = new double[rows * wider];
+        for (int i = 0; i < rows; i++) {
+            int row = i * stride;
+            int to = i * wider;
+            int from = 0;
+            for (int m = 0; m < k; m++) {
+                int cut = cuts[i * k + m];
+                System.arraycopy(color, row + from, c, to, cut + 1 - from);
+                System.arraycopy(energy, row + from, e, to, cut + 1 - from);
+                to += cut + 1 - from;
+                from = cut + 1;
+                
+                int next = cut + 1 < cols ? cut + 1 : Math.max(cut - 1, 0);
+                c[to++] = average(color[row + cut], color[row + next]);
             }
+            System.arraycopy(color, row + from, c, to, cols - from);
+            System.arraycopy(energy, row + from, e, to, cols - from);
         }
         
-        color = newColor;
-        energy = newEnergy;
-        h--;
+        color = c;
+        energy = e;
+        stride = wider;
+        if (transposed) h = wider;
+        else w = wider;
+        energyFloat = null;
+        energyFixed = null;
+        narrowEnergy();
+        
+        // Everything laid out like the old buffers goes with them
+        spareColor = null;
+        spareEnergy = null;
+        distTo = null;
+        distToFloat = null;
+        distToFixed = null;
+        edgeTo = null;
+        costUp = null;
+        costRow = null;
+        parentCodes = null;
+        pathsValid = false;
+        end(span);
+        if (metrics != null) metrics.inserted(k);
         
-        // Recalculate the energy along the seam
-        for (int j = 0; j < width(); j++) {
-            int s = seam[j];
-            // Top edge removed
-            if (s == 0) {
-                energy[s][j] = calcEnergy(j, s);
+        int r = Math.max(energyFunction.radius(), 1);
+        span = start(SeamCarverMetrics.Phase.PATCH);
+        inSlices(rows, (first, last) -> {
+            boolean[] marked = new boolean[cols];
+            for (int i = first; i < last; i++) {
+                Arrays.fill(marked, false);
+                int end = Math.min(i + r, rows - 1);
+                for (int near = Math.max(i - r, 0); near <= end; near++) {
+                    for (int m = 0; m < k; m++) {
+                        int cut = cuts[near * k + m];
+                        int hi = Math.min(cut + r, cols - 1);
+                        for (int j = Math.max(cut - r, 0); j <= hi; j++) marked[j] = true;
+                    }
+                }
+                
+                // Walk the old columns, counting the cuts passed to find
+                // where each marked pixel now is; new pixels always change
+                int passed = 0;
+                for (int j = 0; j < cols; j++) {
+                    if (marked[j]) recalcEnergy(i, j + passed);
+                    if (passed < k && cuts[i * k + passed] == j) {
+                        passed++;
+                        recalcEnergy(i, j + passed);
+                    }
+                }
             }
+        });
+        end(span);
+    }
+    
+    /**
+     * Average two colors, channel by channel, rounding down.
+     * 
+     * @param a a color, packed as by Color.getRGB()
+     * @param b another color, packed the same way
+     * @return the average of the colors.
+     */
+    private static int average(int a, int b) {
+        
+        // Half the bits that differ plus the bits in common, with the bit
+        // shifted into each channel from the one above it masked off
+        return (((a ^ b) & 0xFEFEFEFE) >>> 1) + (a & b);
+    }
+    
+    /**
+     * Remove k paths running down the rows of the current layout, a round of
+     * paths at a time, each round searching bands of columns side by side.
+     * 
+     * @param k the number of paths to remove
+     * @param bands the most bands to split the columns into
+     */
+    private void carveInBands(int k, int bands) {
+        allocateShortestPaths(Precision.DOUBLE);
+        pathsValid = false;
+        
+        int rows = rows();
+        int[][] lo = new int[bands][rows];
+        int[][] hi = new int[bands][rows];
+        int[][] seams = new int[bands][rows];
+        double[] cost = new double[bands];
+        
+        for (int round = 0; k > 0; round++) {
+            int cols = cols();
+            int n = Math.min(bands, cols / 2);
+            int width = cols / n;
+            int shift = (round & 1) * (width / 2);
             
-            // Bottom edge removed
-            else if (s == height()) {
-                energy[s - 1][j] = calcEnergy(j, s - 1);
+            // Each band searches its own columns of the shared arrays
+            SeamCarverMetrics.Span span = start(SeamCarverMetrics.Phase.SEARCH);
+            inSlices(n, (first, last) -> {
+                for (int t = first; t < last; t++) {
+                    int from = t == 0 ? 0 : shift + t * width;
+                    int to = t == n - 1 ? cols - 1 : shift + (t + 1) * width - 1;
+                    Arrays.fill(lo[t], from);
+                    Arrays.fill(hi[t], to);
+                    findSeamInBand(energy, stride, rows, lo[t], hi[t],
+                                   distTo, edgeTo, seams[t]);
+                    cost[t] = distTo[(rows - 1) * stride + seams[t][rows - 1]];
+                }
+            });
+            if (metrics != null) {
+                metrics.relaxed((long) rows * cols);
+                metrics.found(n);
             }
+            end(span);
             
-            // Middle pixel removed
-            else {
-                energy[s][j] = calcEnergy(j, s);
-                energy[s - 1][j] = calcEnergy(j, s - 1);
+            // Keep the shortest seams if the round has too many
+            int take = Math.min(n, k);
+            int[][] chosen = Arrays.copyOf(seams, n);
+            if (take < n) {
+                Integer[] order = new Integer[n];
+                for (int t = 0; t < n; t++) order[t] = t;
+                Arrays.sort(order, (a, b) -> Double.compare(cost[a], cost[b]));
+                chosen = new int[take][];
+                for (int t = 0; t < take; t++) chosen[t] = seams[order[t]];
             }
-        }   
+            
+            carveTogether(chosen);
+            k -= take;
+        }
     }
     
     /**
-     * Remove vertical seam from current picture.
+     * Whether the given bit of a bitmap is set.
      * 
-     * @param seam the given seam.
-     * @throws NullPointerException if the given <em>seam</em> is {@code null}.
-     * @throws IllegalArgumentException if the given <em>seam</em> does not
-     *         match the picture height, if an index in the given <em>seam</em>
-     *         is negative or is wider than the picture, or if two adjacent
-     *         entries in the given <em>seam</em> differ by more than 1.
+     * @param bits the bitmap
+     * @param bit the index of the bit
+     * @return {@code true} if the bit is set.
      */
-    public void removeVerticalSeam(int[] seam) {
+    private static boolean isTaken(long[] bits, long bit) {
+        return (bits[(int) (bit >>> 6)] & (1L << bit)) != 0;
+    }
+    
+    /**
+     * Remove seams running down the rows of the current layout all at once,
+     * then recalculate the energy of the pixels near them.
+     * 
+     * A pixel's energy can only change if a seam passed through the square
+     * its energy is calculated from, so each removed pixel marks the columns
+     * within the radius of it, in the rows within the radius of it; the
+     * marks are taken along as the rows close up.
+     * 
+     * @param seams the columns the seams occupy in each row
+     * @throws IllegalArgumentException if two seams share a pixel.
+     */
+    private void carveTogether(int[][] seams) {
+        int rows = rows();
+        int cols = cols();
+        int k = seams.length;
+        if (k == 0) return;
         
-        // Check for bad input
-        if (width() <= 1)
-            throw new java.lang.IllegalArgumentException("Picture too narrow");
-        if (seam == null) throw new java.lang.NullPointerException();
-        if (seam.length != height())
-            throw new java.lang.IllegalArgumentException("Invalid seam length");
+        // Sort the columns removed from each row, checking them all before
+        // anything is changed
+        int[] cuts = new int[rows * k];
+        for (int i = 0; i < rows; i++) {
+            int at = i * k;
+            for (int m = 0; m < k; m++) cuts[at + m] = seams[m][i];
+            Arrays.sort(cuts, at, at + k);
+            for (int m = 1; m < k; m++) {
+                if (cuts[at + m] == cuts[at + m - 1])
+                    throw new java.lang.IllegalArgumentException("Seams not disjoint");
+            }
+        }
         
-        int xLast = seam[0];
-        for (int x: seam) {
-            if (x >= width() || x < 0)
-                throw new java.lang.IllegalArgumentException("Index out of bounds");
-            if (Math.abs(x - xLast) > 1)
-                throw new java.lang.IllegalArgumentException("Index not adjacent");
-            xLast = x;
+        // Close up each row of color and energy between the cuts
+        SeamCarverMetrics.Span span = start(SeamCarverMetrics.Phase.COMPACTION);
+        inSlices(rows, (first, last) -> {
+            for (int i = first; i < last; i++) {
+                int row = i * stride;
+                int to = row;
+                int from = 0;
+                for (int m = 0; m <= k; m++) {
+                    int end = m < k ? cuts[i * k + m] : cols;
+                    System.arraycopy(color, row + from, color, to, end - from);
+                    System.arraycopy(energy, row + from, energy, to, end - from);
+                    if (energyFloat != null)
+                        System.arraycopy(energyFloat, row + from, energyFloat, to, end - from);
+                    else if (energyFixed != null)
+                        System.arraycopy(energyFixed, row + from, energyFixed, to, end - from);
+                    to += end - from;
+                    from = end + 1;
+                }
+            }
+        });
+        
+        if (transposed) h -= k;
+        else w -= k;
+        pathsValid = false;
+        end(span);
+        if (metrics != null) metrics.removed(k);
+        
+        int r = Math.max(energyFunction.radius(), 1);
+        span = start(SeamCarverMetrics.Phase.PATCH);
+        inSlices(rows, (first, last) -> {
+            boolean[] marked = new boolean[cols];
+            for (int i = first; i < last; i++) {
+                Arrays.fill(marked, false);
+                int end = Math.min(i + r, rows - 1);
+                for (int near = Math.max(i - r, 0); near <= end; near++) {
+                    for (int m = 0; m < k; m++) {
+                        int c = cuts[near * k + m];
+                        int hi = Math.min(c + r, cols - 1);
+                        for (int j = Math.max(c - r, 0); j <= hi; j++) marked[j] = true;
+                    }
+                }
+                
+                // Walk the old columns, counting the cuts passed to find
+                // where each marked pixel now is
+                int passed = 0;
+                for (int j = 0; j < cols; j++) {
+                    if (passed < k && cuts[i * k + passed] == j) {
+                        passed++;
+                        continue;
+                    }
+                    if (marked[j]) recalcEnergy(i, j - passed);
+                }
+            }
+        });
+        end(span);
+    }
+    
+    /**
+     * Work through indices 0 through n - 1 of something in slices, side by
+     * side on the pool when there is one.
+     */
+    private interface Slice {
+        
+        /**
+         * Work through indices first through last - 1.
+         * 
+         * @param first the first index of the slice
+         * @param last one past the last index of the slice
+         */
+        void run(int first, int last);
+    }
+    
+    /**
+     * Run the given slice over indices 0 through n - 1, split into one
+     * slice per thread of the pool, or as a whole when searching serially.
+     * 
+     * @param n the number of indices
+     * @param slice the work to do on each slice
+     */
+    private void inSlices(int n, Slice slice) {
+        int slices = 1;
+        if (pool != null) slices = Math.min(pool.getParallelism(), n);
+        
+        if (slices <= 1) {
+            slice.run(0, n);
+            return;
+        }
+        
+        RecursiveAction[] tasks = new RecursiveAction[slices];
+        for (int t = 0; t < slices; t++) {
+            int first = (int) ((long) n * t / slices);
+            int last = (int) ((long) n * (t + 1) / slices);
+            tasks[t] = new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    slice.run(first, last);
+                }
+            };
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+    }
+    
+    /**
+     * Remove a seam running down the rows of the current layout, then bring
+     * the energy and any kept shortest paths up to date.
+     * 
+     * @param seam the column of the seam in each row
+     */
+    private void carve(int[] seam) {
+        if (metrics != null) metrics.removed(1);
+        removeSeam(seam);
+        if (transposed) h--;
+        else w--;
+        recalcEnergy(seam);
+        if (pathsValid) repairPaths(seam);
+    }
+    
+    /**
+     * Close the gap a seam leaves in each row of color and energy, in their
+     * current layout, with one bulk copy per row.
+     * 
+     * While a batch is deferring, the seam is only recorded for color, to be
+     * removed at the next checkpoint.
+     * 
+     * @param seam the column of the seam in each row
+     */
+    private void removeSeam(int[] seam) {
+        int cols = cols();
+        SeamCarverMetrics.Span span = start(SeamCarverMetrics.Phase.COMPACTION);
+        if (deferring) {
+            System.arraycopy(seam, 0, pendingSeams, pending * seam.length, seam.length);
+            pending++;
+        }
+        for (int i = 0; i < seam.length; i++) {
+            int s = seam[i];
+            int row = i * stride;
+            if (!deferring)
+                System.arraycopy(color, row + s + 1, color, row + s, cols - s - 1);
+            System.arraycopy(energy, row + s + 1, energy, row + s, cols - s - 1);
+            if (energyFloat != null)
+                System.arraycopy(energyFloat, row + s + 1, energyFloat, row + s, cols - s - 1);
+            else if (energyFixed != null)
+                System.arraycopy(energyFixed, row + s + 1, energyFixed, row + s, cols - s - 1);
+            if (pathsValid) {
+                if (precision == Precision.FLOAT)
+                    System.arraycopy(distToFloat, row + s + 1, distToFloat, row + s, cols - s - 1);
+                else if (precision == Precision.FIXED)
+                    System.arraycopy(distToFixed, row + s + 1, distToFixed, row + s, cols - s - 1);
+                else
+                    System.arraycopy(distTo, row + s + 1, distTo, row + s, cols - s - 1);
+                System.arraycopy(edgeTo, row + s + 1, edgeTo, row + s, cols - s - 1);
+            }
         }
+        end(span);
+    }
+    
+    /**
+     * Relax again the pixels whose shortest paths a removed seam may have
+     * changed, once the paths have been shifted along with the pixels.
+     * 
+     * A pixel in some row needs relaxing if its energy was recalculated, if
+     * the seam passed between it and one of its parents, or if the distance
+     * to one of its parents changed. The first two only happen right beside
+     * the seam, and the last only below a pixel that changed in the row
+     * above, so the work stays within a cone below the seam.
+     * 
+     * @param seam the column the seam occupied in each row
+     */
+    private void repairPaths(int[] seam) {
+        int cols = cols();
+        SeamCarverMetrics.Span span = start(SeamCarverMetrics.Phase.SEARCH);
+        relaxed = 0;
         
-        // Create replacement arrays
-        int[][] newColor = new int[height()][width() - 1];
-        double[][] newEnergy = new double[height()][width() - 1];
+        // The columns whose distance changed in the row above
+        int changedLo = cols;
+        int changedHi = -1;
         
-        // Populate replacement arrays, skipping pixels in the seam
-        for (int i = 0; i < height(); i++) {
+        for (int i = 0; i < seam.length; i++) {
             int s = seam[i];
             
-            for (int j = 0; j < s; j++) {
-                newColor[i][j] = color[i][j];
-                newEnergy[i][j] = energy[i][j];
+            // The pixels near the seam, whose energy was recalculated
+            int lo = patchLo(seam, i);
+            int hi = patchHi(seam, i);
+            
+            // The pixels the seam passed between and their parents
+            if (i > 0) {
+                lo = Math.min(lo, Math.min(s, seam[i - 1]) - 1);
+                hi = Math.max(hi, Math.max(s, seam[i - 1]));
+            }
+            
+            // The children of pixels whose distance changed
+            if (changedLo <= changedHi) {
+                lo = Math.min(lo, changedLo - 1);
+                hi = Math.max(hi, changedHi + 1);
             }
             
-            for (int j = s + 1; j < width(); j++) {
-                newColor[i][j - 1] = color[i][j];
-                newEnergy[i][j - 1] = energy[i][j];
+            lo = Math.max(lo, 0);
+            hi = Math.min(hi, cols - 1);
+            
+            changedLo = cols;
+            changedHi = -1;
+            int row = i * stride;
+            for (int j = lo; j <= hi; j++) {
+                double old = distance(row + j);
+                if (i == 0) relaxTop(precision, j, j + 1);
+                else relax(precision, i, j, j + 1);
+                if (distance(row + j) != old) {
+                    changedLo = Math.min(changedLo, j);
+                    changedHi = j;
+                }
+            }
+            relaxed += hi - lo + 1;
+        }
+        if (metrics != null) metrics.relaxed(relaxed);
+        end(span);
+    }
+    
+    /**
+     * Recalculate the energy of the pixels near a removed seam, in the
+     * current layout of color and energy.
+     * 
+     * @param seam the column the seam occupied in each row
+     */
+    private void recalcEnergy(int[] seam) {
+        SeamCarverMetrics.Span span = start(SeamCarverMetrics.Phase.PATCH);
+        for (int i = 0; i < seam.length; i++) {
+            int lo = patchLo(seam, i);
+            int hi = patchHi(seam, i);
+            if (pending > 0) {
+                recalcPendingEnergy(i, lo, hi);
+                continue;
+            }
+            for (int j = lo; j <= hi; j++) {
+                recalcEnergy(i, j);
             }
         }
+        end(span);
+    }
+    
+    /**
+     * Recalculate the energy of the pixels in columns lo through hi of row i
+     * of the current layout, while color still holds pending seams.
+     * 
+     * The colors the energy function reads are gathered, past the pending
+     * seams, into a window that spans its radius around those pixels.
+     * 
+     * @param i the row of the pixels in the current layout
+     * @param lo the first column to recalculate
+     * @param hi the last column to recalculate
+     */
+    private void recalcPendingEnergy(int i, int lo, int hi) {
+        int r = Math.max(energyFunction.radius(), 1);
+        int i0 = i - r;
+        int j0 = lo - r;
+        int span = hi - lo + 1 + 2 * r;
+        if (window == null || window.length < span * (2 * r + 1))
+            window = new int[span * (2 * r + 1)];
         
-        color = newColor;
-        energy = newEnergy;
-        w--;
+        int iEnd = Math.min(i + r, rows() - 1);
+        int jEnd = Math.min(hi + r, cols() - 1);
+        for (int k = Math.max(i0, 0); k <= iEnd; k++) {
+            for (int j = Math.max(j0, 0); j <= jEnd; j++) {
+                window[(k - i0) * span + j - j0] = pendingColor(k, j);
+            }
+        }
         
-        // Recalculate the energy along the seam
-        for (int i = 0; i < height(); i++) {
-            int s = seam[i];
+        // The pixel at row k and column j of the layout is at
+        // window[offset + k * span + j]
+        int offset = -i0 * span - j0;
+        for (int j = lo; j <= hi; j++) {
+            if (transposed)
+                energy[i * stride + j] = energyFunction.energy(window, offset,
+                        span, 1, width(), height(), i, j);
+            else
+                energy[i * stride + j] = energyFunction.energy(window, offset,
+                        1, span, width(), height(), j, i);
+            narrowEnergy(i * stride + j);
+        }
+        if (metrics != null) metrics.recalculated(hi - lo + 1);
+    }
+    
+    /**
+     * Color of the pixel at row i and column j of the current layout, while
+     * color still holds pending seams.
+     * 
+     * @param i the row of the pixel in the current layout
+     * @param j the column of the pixel, not counting pending seams
+     * @return the color of the pixel.
+     */
+    private int pendingColor(int i, int j) {
+        int rows = rows();
+        for (int t = pending - 1; t >= 0; t--) {
+            if (j >= pendingSeams[t * rows + i]) j++;
+        }
+        return color[i * stride + j];
+    }
+    
+    /**
+     * Take every pending seam out of color, in one pass over each row.
+     * 
+     * The pixels each row loses are marked in a bitmap first, so every
+     * remaining pixel is moved only once, however many seams are pending.
+     */
+    private void flushSeams() {
+        if (pending == 0) return;
+        
+        int rows = rows();
+        int before = cols() + pending;
+        int words = (before + 63) >>> 6;
+        if (removedBits == null || removedBits.length < words)
+            removedBits = new long[words];
+        
+        SeamCarverMetrics.Span span = start(SeamCarverMetrics.Phase.COMPACTION);
+        for (int i = 0; i < rows; i++) {
+            Arrays.fill(removedBits, 0, words, 0L);
             
-            // Left edge removed
-            if (s == 0) {
-                energy[i][s] = calcEnergy(s, i);
+            // Count each seam's column past the seams removed before it
+            for (int t = 0; t < pending; t++) {
+                int j = pendingSeams[t * rows + i];
+                for (int u = t - 1; u >= 0; u--) {
+                    if (j >= pendingSeams[u * rows + i]) j++;
+                }
+                removedBits[j >>> 6] |= 1L << j;
             }
             
-            // Right edge removed
-            else if (s == width()) {
-                energy[i][s - 1] = calcEnergy(s - 1, i);
+            int row = i * stride;
+            int to = row;
+            for (int j = 0; j < before; j++) {
+                if ((removedBits[j >>> 6] & (1L << j)) == 0)
+                    color[to++] = color[row + j];
             }
-            
-            // Middle pixel removed
-            else {
-                energy[i][s] = calcEnergy(s, i);
-                energy[i][s - 1] = calcEnergy(s - 1, i);
+        }
+        end(span);
+        
+        pending = 0;
+    }
+    
+    /**
+     * The first column of row i whose energy a removed seam may have changed.
+     * 
+     * A pixel's energy can only change if the seam passed through the square
+     * of pixels its energy is calculated from, in any of the rows that square
+     * spans. The square is widened to a radius of at least 1, because the
+     * pixel that becomes the new last column also changes.
+     * 
+     * @param seam the column the seam occupied in each row
+     * @param i the row in the current layout
+     * @return the first column to recalculate.
+     */
+    private int patchLo(int[] seam, int i) {
+        int r = Math.max(energyFunction.radius(), 1);
+        int lo = seam[i];
+        int end = Math.min(i + r, seam.length - 1);
+        for (int k = Math.max(i - r, 0); k <= end; k++) {
+            lo = Math.min(lo, seam[k]);
+        }
+        return Math.max(lo - r, 0);
+    }
+    
+    /**
+     * The last column of row i whose energy a removed seam may have changed.
+     * 
+     * @param seam the column the seam occupied in each row
+     * @param i the row in the current layout
+     * @return the last column to recalculate.
+     * @see #patchLo(int[], int)
+     */
+    private int patchHi(int[] seam, int i) {
+        int r = Math.max(energyFunction.radius(), 1);
+        int hi = seam[i];
+        int end = Math.min(i + r, seam.length - 1);
+        for (int k = Math.max(i - r, 0); k <= end; k++) {
+            hi = Math.max(hi, seam[k]);
+        }
+        return Math.min(hi + r - 1, cols() - 1);
+    }
+    
+    /**
+     * Recalculate the energy of the pixel at row i and column j of the
+     * current layout.
+     * 
+     * @param i the row of the pixel in the current layout
+     * @param j the column of the pixel in the current layout
+     */
+    private void recalcEnergy(int i, int j) {
+        if (transposed) energy[i * stride + j] = calcEnergy(i, j);
+        else energy[i * stride + j] = calcEnergy(j, i);
+        narrowEnergy(i * stride + j);
+        if (metrics != null) metrics.recalculated(1);
+    }
+    
+    /**
+     * Lay color and energy out so that seams in the given direction run down
+     * their rows, transposing them if they are currently the other way round.
+     * 
+     * @param horizontal {@code true} to work on horizontal seams,
+     *        {@code false} to work on vertical seams
+     */
+    private void orient(boolean horizontal) {
+        if (transposed == horizontal) return;
+        
+        if (spareColor == null) {
+            spareColor = new int[color.length];
+            spareEnergy = new double[energy.length];
+        }
+        
+        // Transpose block by block, so that both the rows being read and the
+        // rows being written stay in cache
+        SeamCarverMetrics.Span span = start(SeamCarverMetrics.Phase.TRANSPOSE);
+        int rows = rows();
+        int cols = cols();
+        for (int i0 = 0; i0 < rows; i0 += BLOCK) {
+            int iEnd = Math.min(i0 + BLOCK, rows);
+            for (int j0 = 0; j0 < cols; j0 += BLOCK) {
+                int jEnd = Math.min(j0 + BLOCK, cols);
+                for (int i = i0; i < iEnd; i++) {
+                    for (int j = j0; j < jEnd; j++) {
+                        spareColor[j * rows + i] = color[i * stride + j];
+                        spareEnergy[j * rows + i] = energy[i * stride + j];
+                    }
+                }
             }
-        }        
+        }
+        
+        int[] c = color;
+        color = spareColor;
+        spareColor = c;
+        double[] e = energy;
+        energy = spareEnergy;
+        spareEnergy = e;
+        
+        stride = rows;
+        transposed = horizontal;
+        narrowEnergy();
+        end(span);
+        
+        // The shortest paths ran along the other direction
+        pathsValid = false;
+    }
+    
+    /**
+     * Index of the pixel at column x and row y in color and energy.
+     * 
+     * @param x
+     * @param y
+     * @return the index of the pixel at column <em>x</em> and row <em>y</em>.
+     */
+    private int index(int x, int y) {
+        if (transposed) return x * stride + y;
+        return y * stride + x;
+    }
+    
+    /**
+     * The number of rows in the current layout of color and energy.
+     * 
+     * @return the picture height, or its width while transposed.
+     */
+    private int rows() {
+        return transposed ? w : h;
+    }
+    
+    /**
+     * The number of columns in the current layout of color and energy.
+     * 
+     * @return the picture width, or its height while transposed.
+     */
+    private int cols() {
+        return transposed ? h : w;
     }
 
     /**
+     * Retarget a batch of images.
+     * 
+     * Usage: {@code SeamCarver input width height output [threads]}
+     * 
+     * The input is a directory, whose image files are all retargeted, or a
+     * manifest listing one image per line, relative to the manifest; blank
+     * lines and lines starting with # are skipped. The width and height are
+     * in pixels, or in percent of each image's own size when followed by %.
+     * Each image is written in its own format to the output directory, at
+     * its path relative to the input directory or to the manifest's
+     * directory, or under its bare name if it lies outside that directory.
+     * It is narrowed or shortened by batch seam removal and widened or
+     * lengthened by seam insertion.
+     * 
+     * Bad arguments, a missing input, and two images that would be written
+     * to the same file are reported before any image is decoded, and exit
+     * with status 2. If any image fails the exit status is 1.
+     * 
+     * The images are carved side by side on a fixed number of threads, one
+     * carver per image, by default one thread per processor. No more than
+     * two images per thread are decoded and not yet written at any time, so
+     * memory stays bounded however many images there are. When all are done
+     * the throughput and the latency per image are printed.
+     * 
+     * @param args the command line arguments
+     * @throws IOException if the input cannot be listed.
+     * @throws InterruptedException if interrupted while waiting for images.
+     */
+    public static void main(String[] args)
+            throws IOException, InterruptedException {
+        int status = run(args);
+        if (status != 0) System.exit(status);
+    }
+    
+    /**
+     * Retarget a batch of images as main() does, without exiting.
+     * 
      * @param args the command line arguments
+     * @return the exit status: 0 if every image was retargeted, 1 if any
+     *         failed, and 2 for bad arguments.
+     * @throws IOException if the input cannot be listed.
+     * @throws InterruptedException if interrupted while waiting for images.
+     */
+    static int run(String[] args) throws IOException, InterruptedException {
+        if (args.length < 4 || args.length > 5) return usage(null);
+        
+        Path input = Paths.get(args[0]);
+        String width = args[1];
+        String height = args[2];
+        Path output = Paths.get(args[3]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        
+        // Check for bad input before anything is decoded
+        List<Path> images = null;
+        Map<Path, Path> outputs = null;
+        try {
+            if (args.length == 5) threads = Integer.parseInt(args[4]);
+            target(width, 1);
+            target(height, 1);
+            if (threads < 1)
+                throw new java.lang.IllegalArgumentException("Threads below 1");
+            images = listImages(input);
+            outputs = outputs(input, images, output);
+        }
+        catch (NoSuchFileException e) {
+            return usage("No such file or directory: " + e.getFile());
+        }
+        catch (java.lang.IllegalArgumentException e) {
+            return usage(e.getMessage());
+        }
+        Files.createDirectories(output);
+        
+        // A permit per image decoded and not yet written; the queue has room
+        // for every image holding a permit, so nothing is ever rejected
+        Semaphore decoded = new Semaphore(2 * threads);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(2 * threads));
+        
+        long[] latency = new long[images.size()];
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicLong pixels = new AtomicLong();
+        
+        long start = System.nanoTime();
+        for (Path image: images) {
+            Path out = outputs.get(image);
+            decoded.acquire();
+            executor.execute(() -> {
+                long t0 = System.nanoTime();
+                try {
+                    pixels.addAndGet(retarget(image, width, height, out));
+                    latency[done.getAndIncrement()] = System.nanoTime() - t0;
+                }
+                catch (IOException | RuntimeException e) {
+                    failed.incrementAndGet();
+                    System.err.println(image + ": " + e);
+                }
+                finally {
+                    decoded.release();
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        
+        // Nearest-rank percentiles of the images that were carved
+        int n = done.get();
+        long[] sorted = Arrays.copyOf(latency, n);
+        Arrays.sort(sorted);
+        double p50 = n == 0 ? 0 : sorted[(int) Math.ceil(0.50 * n) - 1] / 1e6;
+        double p99 = n == 0 ? 0 : sorted[(int) Math.ceil(0.99 * n) - 1] / 1e6;
+        
+        System.out.printf(Locale.ROOT,
+                "%d images, %d failed, %.2f s: %.2f images/s, %.2f MP/s, "
+                + "p50 %.1f ms, p99 %.1f ms%n",
+                n, failed.get(), seconds, n / seconds,
+                pixels.get() / 1e6 / seconds, p50, p99);
+        return failed.get() > 0 ? 1 : 0;
+    }
+    
+    /**
+     * Print the usage, after what was wrong if given.
+     * 
+     * @param problem what was wrong with the arguments, or {@code null}
+     * @return the exit status for bad arguments, 2.
+     */
+    private static int usage(String problem) {
+        if (problem != null) System.err.println("SeamCarver: " + problem);
+        System.err.println("Usage: SeamCarver input width[%] height[%] output [threads]");
+        return 2;
+    }
+    
+    /**
+     * The file each image is written to: its path relative to the input
+     * directory, or to the directory of the manifest, resolved against the
+     * output directory. Images outside that directory keep only their names.
+     * 
+     * @param input the input directory or manifest
+     * @param images the images listed from the input
+     * @param output the output directory
+     * @return the output file of each image.
+     * @throws IllegalArgumentException if two images would be written to the
+     *         same file.
+     */
+    private static Map<Path, Path> outputs(Path input, List<Path> images,
+                                           Path output) {
+        Path base = input.toAbsolutePath().normalize();
+        if (!Files.isDirectory(input)) base = base.getParent();
+        
+        Map<Path, Path> outputs = new HashMap<>();
+        Map<Path, Path> written = new HashMap<>();
+        for (Path image: images) {
+            Path relative = base.relativize(image.toAbsolutePath().normalize());
+            if (relative.startsWith("..")) relative = image.getFileName();
+            Path out = output.resolve(relative);
+            
+            Path other = written.put(out, image);
+            if (other != null)
+                throw new java.lang.IllegalArgumentException(
+                        other + " and " + image + " would both be written to " + out);
+            outputs.put(image, out);
+        }
+        return outputs;
+    }
+    
+    /**
+     * The images to retarget: the readable image files in a directory, or
+     * the files a manifest lists.
+     * 
+     * @param input a directory or a manifest
+     * @return the paths of the images, in order.
+     * @throws IOException if the directory or manifest cannot be read.
+     */
+    private static List<Path> listImages(Path input) throws IOException {
+        if (Files.isDirectory(input)) {
+            List<String> suffixes = Arrays.asList(ImageIO.getReaderFileSuffixes());
+            try (Stream<Path> files = Files.list(input)) {
+                return files.filter(Files::isRegularFile)
+                            .filter(f -> suffixes.contains(suffix(f)))
+                            .sorted()
+                            .collect(Collectors.toList());
+            }
+        }
+        
+        List<Path> images = new ArrayList<>();
+        Path base = input.toAbsolutePath().getParent();
+        for (String line: Files.readAllLines(input)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            images.add(base.resolve(line));
+        }
+        return images;
+    }
+    
+    /**
+     * Retarget one image and write it out.
+     * 
+     * @param image the image to read
+     * @param width the target width, in pixels or followed by %
+     * @param height the target height, in pixels or followed by %
+     * @param out the file to write, in the format its name implies
+     * @return the number of pixels in the image read.
+     * @throws IOException if the image cannot be read or written.
+     */
+    private static long retarget(Path image, String width, String height,
+                                 Path out) throws IOException {
+        BufferedImage picture = ImageIO.read(image.toFile());
+        if (picture == null) throw new IOException("Unreadable image");
+        
+        SeamCarver carver = new SeamCarver(picture);
+        long pixels = (long) carver.width() * carver.height();
+        int w = target(width, carver.width());
+        int h = target(height, carver.height());
+        picture = null;
+        
+        if (carver.width() > w) carver.removeVerticalSeams(carver.width() - w);
+        while (carver.width() < w)
+            carver.insertVerticalSeams(Math.min(w - carver.width(), carver.width()));
+        if (carver.height() > h) carver.removeHorizontalSeams(carver.height() - h);
+        while (carver.height() < h)
+            carver.insertHorizontalSeams(Math.min(h - carver.height(), carver.height()));
+        
+        if (out.getParent() != null) Files.createDirectories(out.getParent());
+        if (!ImageIO.write(carver.toBufferedImage(), suffix(out), out.toFile()))
+            throw new IOException("No writer for " + suffix(out));
+        return pixels;
+    }
+    
+    /**
+     * The size a target asks for.
+     * 
+     * @param target a size in pixels, or a percentage followed by %
+     * @param size the size the target is a percentage of
+     * @return the size, at least 1.
+     * @throws IllegalArgumentException if the target is malformed or not
+     *         positive.
+     */
+    private static int target(String target, int size) {
+        int value;
+        if (target.endsWith("%")) {
+            double percent = Double.parseDouble(target.substring(0, target.length() - 1));
+            if (!(percent > 0))
+                throw new java.lang.IllegalArgumentException("Invalid target " + target);
+            value = (int) Math.max(1, Math.round(size * percent / 100));
+        }
+        else {
+            value = Integer.parseInt(target);
+            if (value < 1)
+                throw new java.lang.IllegalArgumentException("Invalid target " + target);
+        }
+        return value;
+    }
+    
+    /**
+     * The lower-case suffix of a file name, without the dot.
+     * 
+     * @param file the file
+     * @return the suffix, or an empty string if the name has none.
      */
-    public static void main(String[] args) {
-        // TODO code application logic here
+    private static String suffix(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
     }
     
 }
@@ -0,0 +1,424 @@
+/*
+ * Copyright (C) 2026 The seam-carving contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Where a seam carver's time goes.
+ * 
+ * A carver given a metrics object with setMetrics() times each phase of its
+ * work, counts the pixels it relaxes and the energies it recalculates, and
+ * measures the bytes its calling thread allocates along the way. A carver
+ * without one checks a single null reference per phase and does nothing
+ * else. One metrics object may be shared by any number of carvers, on any
+ * number of threads; snapshot() reads the totals at any time.
+ * 
+ * Each phase is also committed as a JDK Flight Recorder event, named
+ * seamcarving.Phase, whenever a recording has that event enabled, so that
+ * carving shows up on a live recording beside everything else.
+ * 
+ * Allocation is measured on the thread that calls the carver; arrays
+ * allocated by the threads of a parallel carver's pool are not counted.
+ * 
+ * @author The seam-carving contributors
+ */
+public final class SeamCarverMetrics {
+    
+    /**
+     * The phases of a carver's work.
+     */
+    public enum Phase {
+        
+        /** Calculating the energy of every pixel of a new carver. */
+        ENERGY,
+        
+        /** Relaxing pixels to find the shortest paths through them. */
+        SEARCH,
+        
+        /** Tracing seams back along the shortest paths. */
+        BACKTRACK,
+        
+        /** Closing up, or opening, the rows of the buffers around seams. */
+        COMPACTION,
+        
+        /** Recalculating the energy of the pixels near seams. */
+        PATCH,
+        
+        /** Transposing the buffers between vertical and horizontal seams. */
+        TRANSPOSE
+    }
+    
+    // The thread allocation counter, or null if the JVM has none
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+    
+    private final Map<Phase, LongAdder> nanos = new EnumMap<>(Phase.class);
+    private final Map<Phase, LongAdder> allocated = new EnumMap<>(Phase.class);
+    private final LongAdder relaxed = new LongAdder();
+    private final LongAdder recalculated = new LongAdder();
+    private final LongAdder found = new LongAdder();
+    private final LongAdder removed = new LongAdder();
+    private final LongAdder inserted = new LongAdder();
+    
+    /**
+     * Create a metrics object with every total at zero.
+     */
+    public SeamCarverMetrics() {
+        for (Phase phase: Phase.values()) {
+            nanos.put(phase, new LongAdder());
+            allocated.put(phase, new LongAdder());
+        }
+    }
+    
+    /**
+     * The JVM's per-thread allocation counter, if it has one.
+     * 
+     * @return the counter, or {@code null}.
+     */
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        try {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean counter =
+                        (com.sun.management.ThreadMXBean) threads;
+                if (counter.isThreadAllocatedMemorySupported()) {
+                    counter.setThreadAllocatedMemoryEnabled(true);
+                    return counter;
+                }
+            }
+        }
+        catch (UnsupportedOperationException | SecurityException e) {
+            // Leave allocation unmeasured
+        }
+        return null;
+    }
+    
+    /**
+     * Bytes allocated by the current thread so far.
+     * 
+     * @return the bytes allocated, or 0 if they cannot be measured.
+     */
+    private static long allocatedBytes() {
+        if (THREADS == null) return 0;
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    
+    /**
+     * Start timing a phase on the current thread.
+     * 
+     * @param phase the phase
+     * @param width the width of the carver's picture
+     * @param height the height of the carver's picture
+     * @return the span to end when the phase is over.
+     */
+    Span start(Phase phase, int width, int height) {
+        return new Span(phase, width, height);
+    }
+    
+    /**
+     * Charge time to a phase that has already been timed.
+     * 
+     * @param phase the phase
+     * @param nanos the time the phase took
+     */
+    void add(Phase phase, long nanos) {
+        this.nanos.get(phase).add(nanos);
+    }
+    
+    /**
+     * Count pixels relaxed.
+     * 
+     * @param cells the number of pixels
+     */
+    void relaxed(long cells) {
+        relaxed.add(cells);
+    }
+    
+    /**
+     * Count energies recalculated.
+     * 
+     * @param pixels the number of pixels
+     */
+    void recalculated(long pixels) {
+        recalculated.add(pixels);
+    }
+    
+    /**
+     * Count seams found.
+     * 
+     * @param seams the number of seams
+     */
+    void found(long seams) {
+        found.add(seams);
+    }
+    
+    /**
+     * Count seams removed.
+     * 
+     * @param seams the number of seams
+     */
+    void removed(long seams) {
+        removed.add(seams);
+    }
+    
+    /**
+     * Count seams inserted.
+     * 
+     * @param seams the number of seams
+     */
+    void inserted(long seams) {
+        inserted.add(seams);
+    }
+    
+    /**
+     * Set every total back to zero.
+     * 
+     * Work going on while the totals are reset may be partly counted.
+     */
+    public void reset() {
+        for (Phase phase: Phase.values()) {
+            nanos.get(phase).reset();
+            allocated.get(phase).reset();
+        }
+        relaxed.reset();
+        recalculated.reset();
+        found.reset();
+        removed.reset();
+        inserted.reset();
+    }
+    
+    /**
+     * The totals so far.
+     * 
+     * @return a snapshot of the totals, which later work does not change.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+    
+    /**
+     * A phase being timed, and the flight recorder event that reports it.
+     */
+    final class Span {
+        private final Phase phase;
+        private final long startNanos;
+        private final long startAllocated;
+        private final PhaseEvent event;
+        
+        private Span(Phase phase, int width, int height) {
+            this.phase = phase;
+            event = new PhaseEvent();
+            event.phase = phase.name();
+            event.width = width;
+            event.height = height;
+            event.begin();
+            startAllocated = allocatedBytes();
+            startNanos = System.nanoTime();
+        }
+        
+        /**
+         * End the phase, charging its time and allocation to the totals.
+         */
+        void end() {
+            long elapsed = System.nanoTime() - startNanos;
+            long bytes = allocatedBytes() - startAllocated;
+            nanos.get(phase).add(elapsed);
+            allocated.get(phase).add(bytes);
+            
+            event.end();
+            if (event.shouldCommit()) {
+                event.allocated = bytes;
+                event.commit();
+            }
+        }
+    }
+    
+    /**
+     * A phase of a seam carver's work, as the flight recorder sees it.
+     */
+    @Name("seamcarving.Phase")
+    @Label("Seam Carver Phase")
+    @Category("Seam Carving")
+    @Description("A phase of a seam carver's work")
+    static final class PhaseEvent extends Event {
+        
+        @Label("Phase")
+        String phase;
+        
+        @Label("Width")
+        @Description("The width of the picture when the phase began")
+        int width;
+        
+        @Label("Height")
+        @Description("The height of the picture when the phase began")
+        int height;
+        
+        @Label("Allocated")
+        @Description("Bytes allocated by the carving thread during the phase")
+        @DataAmount
+        long allocated;
+    }
+    
+    /**
+     * The totals of a metrics object at one moment.
+     */
+    public static final class Snapshot {
+        private final Map<Phase, Long> nanos = new EnumMap<>(Phase.class);
+        private final Map<Phase, Long> allocated = new EnumMap<>(Phase.class);
+        private final long relaxed;
+        private final long recalculated;
+        private final long found;
+        private final long removed;
+        private final long inserted;
+        
+        private Snapshot(SeamCarverMetrics metrics) {
+            for (Phase phase: Phase.values()) {
+                nanos.put(phase, metrics.nanos.get(phase).sum());
+                allocated.put(phase, metrics.allocated.get(phase).sum());
+            }
+            relaxed = metrics.relaxed.sum();
+            recalculated = metrics.recalculated.sum();
+            found = metrics.found.sum();
+            removed = metrics.removed.sum();
+            inserted = metrics.inserted.sum();
+        }
+        
+        /**
+         * Time spent in a phase.
+         * 
+         * @param phase the phase
+         * @return the nanoseconds spent in the phase.
+         */
+        public long nanos(Phase phase) {
+            return nanos.get(phase);
+        }
+        
+        /**
+         * Time spent in all phases.
+         * 
+         * @return the nanoseconds spent in all phases.
+         */
+        public long totalNanos() {
+            long total = 0;
+            for (long n: nanos.values()) total += n;
+            return total;
+        }
+        
+        /**
+         * Bytes the carving threads allocated during a phase.
+         * 
+         * @param phase the phase
+         * @return the bytes allocated during the phase.
+         */
+        public long allocatedBytes(Phase phase) {
+            return allocated.get(phase);
+        }
+        
+        /**
+         * Bytes the carving threads allocated during all phases.
+         * 
+         * @return the bytes allocated during all phases.
+         */
+        public long allocatedBytes() {
+            long total = 0;
+            for (long n: allocated.values()) total += n;
+            return total;
+        }
+        
+        /**
+         * Bytes allocated per seam removed or inserted, or per seam found if
+         * none were removed or inserted.
+         * 
+         * @return the bytes allocated per seam, or 0 if there were no seams.
+         */
+        public double allocatedBytesPerSeam() {
+            long seams = removed + inserted;
+            if (seams == 0) seams = found;
+            return seams == 0 ? 0 : (double) allocatedBytes() / seams;
+        }
+        
+        /**
+         * Pixels relaxed by seam searches.
+         * 
+         * @return the number of pixels relaxed.
+         */
+        public long relaxedCells() {
+            return relaxed;
+        }
+        
+        /**
+         * Energies calculated, including those of new carvers.
+         * 
+         * @return the number of energies calculated.
+         */
+        public long energyRecalculations() {
+            return recalculated;
+        }
+        
+        /**
+         * Seams found.
+         * 
+         * @return the number of seams found.
+         */
+        public long seamsFound() {
+            return found;
+        }
+        
+        /**
+         * Seams removed.
+         * 
+         * @return the number of seams removed.
+         */
+        public long seamsRemoved() {
+            return removed;
+        }
+        
+        /**
+         * Seams inserted.
+         * 
+         * @return the number of seams inserted.
+         */
+        public long seamsInserted() {
+            return inserted;
+        }
+        
+        @Override
+        public String toString() {
+            StringBuilder s = new StringBuilder();
+            for (Phase phase: Phase.values()) {
+                s.append(phase.name().toLowerCase()).append(' ')
+                 .append(nanos.get(phase) / 1000000).append(" ms, ");
+            }
+            s.append("relaxed ").append(relaxed)
+             .append(", recalculated ").append(recalculated)
+             .append(", found ").append(found)
+             .append(", removed ").append(removed)
+             .append(", inserted ").append(inserted)
+             .append(", allocated ").append(allocatedBytes()).append(" B");
+            return s.toString();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2026 The seam-carving contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * A pool of seam carvers, so that a server carving picture after picture
+ * reuses the buffers of earlier carvers instead of allocating new ones for
+ * every picture.
+ * 
+ * A carver is leased for one picture, used by one thread, and released when
+ * that thread is done with it. The lease resets an idle carver to the new
+ * picture, and its buffers only grow when the picture does not fit them,
+ * so the pooled carvers come to fit the largest pictures seen lately. Any
+ * settings made on a leased carver are undone when it is released.
+ * 
+ * The idle carvers may take up no more than a given number of bytes; when
+ * a release would exceed that, the carvers idle longest are let go first.
+ * Leased carvers do not count against the bound. All methods are safe to
+ * call from several threads.
+ * 
+ * @author The seam-carving contributors
+ */
+public class SeamCarverPool {
+    
+    // The function the energy of each pixel is calculated with
+    private final EnergyFunction energyFunction;
+    
+    // The idle carvers, from the longest idle to the most recently released,
+    // and the carvers leased and not yet released
+    private final ArrayDeque<SeamCarver> idle = new ArrayDeque<SeamCarver>();
+    private final Set<SeamCarver> leased =
+            Collections.newSetFromMap(new IdentityHashMap<SeamCarver, Boolean>());
+    
+    // The most bytes the idle carvers may take up, and the bytes they do
+    private final long maxBytes;
+    private long bytes;
+    
+    /**
+     * Create an empty pool of carvers using the dual-gradient energy
+     * function.
+     * 
+     * @param maxBytes the most bytes the idle carvers may take up
+     * @throws IllegalArgumentException if <em>maxBytes</em> is negative.
+     */
+    public SeamCarverPool(long maxBytes) {
+        this(maxBytes, new DualGradientEnergy());
+    }
+    
+    /**
+     * Create an empty pool of carvers using the given energy function.
+     * 
+     * @param maxBytes the most bytes the idle carvers may take up
+     * @param energyFunction the energy function, shared by every carver
+     * @throws NullPointerException if the energy function is {@code null}.
+     * @throws IllegalArgumentException if <em>maxBytes</em> is negative.
+     */
+    public SeamCarverPool(long maxBytes, EnergyFunction energyFunction) {
+        if (energyFunction == null) throw new java.lang.NullPointerException();
+        if (maxBytes < 0)
+            throw new java.lang.IllegalArgumentException("Negative size");
+        this.maxBytes = maxBytes;
+        this.energyFunction = energyFunction;
+    }
+    
+    /**
+     * Lease a carver for the given pixels.
+     * 
+     * @param argb the colors of the pixels, row by row, packed as by
+     *        Color.getRGB()
+     * @param width the width of the picture
+     * @param height the height of the picture
+     * @return a carver of the picture, with the settings of a new carver.
+     * @throws NullPointerException if <em>argb</em> is {@code null}.
+     * @throws IllegalArgumentException if <em>width</em> or <em>height</em>
+     *         is negative, or if <em>argb</em> holds fewer than
+     *         <em>width</em> * <em>height</em> pixels.
+     */
+    public SeamCarver lease(int[] argb, int width, int height) {
+        if (argb == null) throw new java.lang.NullPointerException();
+        if (width < 0 || height < 0)
+            throw new java.lang.IllegalArgumentException("Negative dimension");
+        if ((long) width * height > argb.length)
+            throw new java.lang.IllegalArgumentException("Too few pixels");
+        
+        SeamCarver carver = take(width * height);
+        if (carver == null) carver = new SeamCarver(argb, width, height, energyFunction);
+        else carver.reset(argb, width, height);
+        leased(carver);
+        return carver;
+    }
+    
+    /**
+     * Lease a carver for the given image.
+     * 
+     * @param image the image
+     * @return a carver of the image, with the settings of a new carver.
+     * @throws NullPointerException if the given image is {@code null}.
+     * @throws IllegalArgumentException if the image has more pixels than an
+     *         array can hold.
+     */
+    public SeamCarver lease(BufferedImage image) {
+        if (image == null) throw new java.lang.NullPointerException();
+        
+        SeamCarver carver = take(SeamCarver.area(image.getWidth(), image.getHeight()));
+        if (carver == null) carver = new SeamCarver(image, energyFunction);
+        else carver.reset(image);
+        leased(carver);
+        return carver;
+    }
+    
+    /**
+     * Give a leased carver back to the pool.
+     * 
+     * The carver must not be used again after it is released. Its settings
+     * are undone, and if the idle carvers would then take up more than the
+     * bound, those idle longest are let go until they fit; a carver larger
+     * than the whole bound is let go at once.
+     * 
+     * @param carver the carver to release
+     * @throws NullPointerException if <em>carver</em> is {@code null}.
+     * @throws IllegalArgumentException if <em>carver</em> is not leased
+     *         from this pool.
+     */
+    public void release(SeamCarver carver) {
+        if (carver == null) throw new java.lang.NullPointerException();
+        synchronized (this) {
+            if (!leased.remove(carver))
+                throw new java.lang.IllegalArgumentException("Not leased");
+        }
+        
+        carver.clearSettings();
+        long size = carver.retainedBytes();
+        
+        synchronized (this) {
+            if (size > maxBytes) return;
+            while (bytes + size > maxBytes) {
+                bytes -= idle.pollFirst().retainedBytes();
+            }
+            idle.addLast(carver);
+            bytes += size;
+        }
+    }
+    
+    /**
+     * Take the idle carver that best fits a picture out of the pool: the
+     * smallest with room for it, or else the largest.
+     * 
+     * @param pixels the number of pixels in the picture
+     * @return the carver, or {@code null} if none is idle.
+     */
+    private synchronized SeamCarver take(int pixels) {
+        SeamCarver best = null;
+        for (SeamCarver carver: idle) {
+            if (best == null) best = carver;
+            else if (best.capacity() < pixels) {
+                if (carver.capacity() > best.capacity()) best = carver;
+            }
+            else if (carver.capacity() >= pixels &&
+                     carver.capacity() < best.capacity()) best = carver;
+        }
+        
+        if (best != null) {
+            idle.removeFirstOccurrence(best);
+            bytes -= best.retainedBytes();
+        }
+        return best;
+    }
+    
+    /**
+     * Record a carver as leased.
+     * 
+     * @param carver the carver
+     */
+    private synchronized void leased(SeamCarver carver) {
+        leased.add(carver);
+    }
+    
+    /**
+     * Number of idle carvers.
+     * 
+     * @return the number of carvers in the pool waiting to be leased.
+     */
+    public synchronized int idle() {
+        return idle.size();
+    }
+    
+    /**
+     * Bytes the idle carvers take up.
+     * 
+     * @return the total size of the idle carvers' arrays.
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+}
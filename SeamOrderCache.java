@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2026 The seam-carving contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of seam order indexes, keyed by the content of their pictures,
+ * the direction of their seams, their energy function and the smallest size
+ * they retarget to, and bounded by the bytes their steps take up.
+ * 
+ * When adding an index would exceed the bound, the least recently used
+ * indexes are evicted first. Mapped indexes count their mapped size, so the
+ * bound also limits how much of the index files the cache keeps paged in.
+ * All methods are safe to call from several threads.
+ * 
+ * @author The seam-carving contributors
+ */
+public class SeamOrderCache {
+    
+    // The indexes, from least to most recently used
+    private final LinkedHashMap<String, SeamOrderIndex> indexes =
+            new LinkedHashMap<String, SeamOrderIndex>(16, 0.75f, true);
+    
+    // The most bytes the cached indexes may take up, and the bytes they do
+    private final long maxBytes;
+    private long bytes;
+    
+    /**
+     * Create an empty cache.
+     * 
+     * @param maxBytes the most bytes the cached indexes may take up
+     * @throws IllegalArgumentException if <em>maxBytes</em> is negative.
+     */
+    public SeamOrderCache(long maxBytes) {
+        if (maxBytes < 0)
+            throw new java.lang.IllegalArgumentException("Negative size");
+        this.maxBytes = maxBytes;
+    }
+    
+    /**
+     * The hash a picture's index is cached under.
+     * 
+     * @param argb the colors of the pixels, row by row
+     * @param width the width of the picture
+     * @param height the height of the picture
+     * @return the SHA-256 of the dimensions and pixels, in hexadecimal.
+     * @throws NullPointerException if <em>argb</em> is {@code null}.
+     * @throws IllegalArgumentException if <em>argb</em> holds fewer than
+     *         <em>width</em> * <em>height</em> pixels.
+     */
+    public static String contentHash(int[] argb, int width, int height) {
+        if (argb == null) throw new java.lang.NullPointerException();
+        if ((long) width * height > argb.length)
+            throw new java.lang.IllegalArgumentException("Too few pixels");
+        
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new java.lang.AssertionError(e);
+        }
+        
+        byte[] chunk = new byte[1 << 14];
+        int n = 0;
+        int[] head = {width, height};
+        for (int pass = 0; pass < 2; pass++) {
+            int[] values = pass == 0 ? head : argb;
+            int length = pass == 0 ? 2 : width * height;
+            for (int p = 0; p < length; p++) {
+                int v = values[p];
+                chunk[n++] = (byte) (v >>> 24);
+                chunk[n++] = (byte) (v >>> 16);
+                chunk[n++] = (byte) (v >>> 8);
+                chunk[n++] = (byte) v;
+                if (n == chunk.length) {
+                    digest.update(chunk, 0, n);
+                    n = 0;
+                }
+            }
+        }
+        digest.update(chunk, 0, n);
+        
+        StringBuilder hex = new StringBuilder();
+        for (byte b: digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+    
+    /**
+     * The key an index is cached under. The energy id goes last, so that no
+     * id can make two different keys equal.
+     * 
+     * @param hash the content hash of the picture
+     * @param vertical whether the index removes vertical seams
+     * @param energyId the class name of the energy function
+     * @param minSize the smallest size the index retargets to
+     * @return the key.
+     * @throws NullPointerException if <em>hash</em> or <em>energyId</em>
+     *         is {@code null}.
+     */
+    private static String key(String hash, boolean vertical, String energyId,
+                              int minSize) {
+        if (hash == null || energyId == null)
+            throw new java.lang.NullPointerException();
+        return hash + (vertical ? ":v:" : ":h:") + minSize + ":" + energyId;
+    }
+    
+    /**
+     * The index cached for the given picture and parameters, which becomes
+     * the most recently used.
+     * 
+     * @param hash the content hash of the picture
+     * @param vertical whether the index removes vertical seams
+     * @param energyId the class name of the energy function
+     * @param minSize the smallest size the index retargets to
+     * @return the index, or {@code null} if none is cached.
+     * @throws NullPointerException if <em>hash</em> or <em>energyId</em>
+     *         is {@code null}.
+     */
+    public synchronized SeamOrderIndex get(String hash, boolean vertical,
+                                           String energyId, int minSize) {
+        return indexes.get(key(hash, vertical, energyId, minSize));
+    }
+    
+    /**
+     * Cache the given index for the picture with the given hash, evicting the
+     * least recently used indexes as needed to stay within the bound.
+     * 
+     * The index replaces any cached for the same picture, direction, energy
+     * function and minimum size. An index larger than the whole bound is not
+     * cached at all.
+     * 
+     * @param hash the content hash of the picture
+     * @param index the index of the picture
+     * @throws NullPointerException if <em>hash</em> or <em>index</em>
+     *         is {@code null}.
+     */
+    public synchronized void put(String hash, SeamOrderIndex index) {
+        if (hash == null || index == null)
+            throw new java.lang.NullPointerException();
+        
+        String key = key(hash, index.isVertical(), index.energyId(),
+                         index.minSize());
+        SeamOrderIndex old = indexes.remove(key);
+        if (old != null) bytes -= old.byteSize();
+        if (index.byteSize() > maxBytes) return;
+        
+        Iterator<Map.Entry<String, SeamOrderIndex>> eldest =
+                indexes.entrySet().iterator();
+        while (bytes + index.byteSize() > maxBytes) {
+            bytes -= eldest.next().getValue().byteSize();
+            eldest.remove();
+        }
+        
+        indexes.put(key, index);
+        bytes += index.byteSize();
+    }
+    
+    /**
+     * Drop the index cached for the given picture and parameters, if any.
+     * 
+     * @param hash the content hash of the picture
+     * @param vertical whether the index removes vertical seams
+     * @param energyId the class name of the energy function
+     * @param minSize the smallest size the index retargets to
+     * @return the index that was cached, or {@code null} if none was.
+     * @throws NullPointerException if <em>hash</em> or <em>energyId</em>
+     *         is {@code null}.
+     */
+    public synchronized SeamOrderIndex remove(String hash, boolean vertical,
+                                              String energyId, int minSize) {
+        SeamOrderIndex index = indexes.remove(key(hash, vertical, energyId, minSize));
+        if (index != null) bytes -= index.byteSize();
+        return index;
+    }
+    
+    /**
+     * Drop every index cached for the picture with the given hash.
+     * 
+     * @param hash the content hash of the picture
+     * @return the number of indexes dropped.
+     * @throws NullPointerException if <em>hash</em> is {@code null}.
+     */
+    public synchronized int removeAll(String hash) {
+        if (hash == null) throw new java.lang.NullPointerException();
+        
+        int dropped = 0;
+        Iterator<Map.Entry<String, SeamOrderIndex>> entries =
+                indexes.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, SeamOrderIndex> entry = entries.next();
+            if (entry.getKey().startsWith(hash + ":")) {
+                bytes -= entry.getValue().byteSize();
+                entries.remove();
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+    
+    /**
+     * Number of cached indexes.
+     * 
+     * @return the number of indexes in the cache.
+     */
+    public synchronized int size() {
+        return indexes.size();
+    }
+    
+    /**
+     * Bytes the cached indexes take up.
+     * 
+     * @return the total size of the cached indexes' steps.
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,502 @@
+/*
+ * Copyright (C) 2026 The seam-carving contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * The order in which seam carving removes the pixels of a picture, so that
+ * the picture can be retargeted to any size in one pass.
+ * 
+ * An index is built by carving the picture down to a minimum width (or
+ * height) once, and recording for every pixel the step at which its seam
+ * was removed. Carving to a larger size removes exactly the seams of the
+ * first steps, so the retargeted picture is just the pixels whose step is
+ * late enough, taken in order; no seam has to be found again.
+ * 
+ * An index can be written to a file, usually next to its picture, and
+ * mapped back into memory later without reading or copying the steps.
+ * The file holds, in little-endian order:
+ * <pre>
+ *   int    magic, the bytes "SCOI"
+ *   int    format version, 1
+ *   int    width
+ *   int    height
+ *   int    1 for vertical seams, 0 for horizontal seams
+ *   int    number of seams removed
+ *   int    CRC-32 of the steps
+ *   int    length of the energy function id, in bytes
+ *   byte[] energy function id, UTF-8, padded with zeros to a multiple of 4
+ *   int[]  the step of each pixel, row by row
+ * </pre>
+ * 
+ * @author The seam-carving contributors
+ */
+public class SeamOrderIndex {
+    
+    // The size of the picture the index was built from
+    private final int width;
+    private final int height;
+    
+    // True if vertical seams were removed, false if horizontal seams were
+    private final boolean vertical;
+    
+    // The number of seams removed while building the index
+    private final int removed;
+    
+    // The step at which each pixel was removed, row by row; pixels that were
+    // never removed have step removed. Either wraps an array or maps a file.
+    private final IntBuffer ranks;
+    
+    // The class name of the energy function the seams were found with
+    private final String energyId;
+    
+    // The first bytes of an index file, and the version of the format
+    private static final int MAGIC = 0x494F4353;
+    private static final int VERSION = 1;
+    
+    // The suffix of the file an index is stored in next to its picture
+    private static final String SUFFIX = ".seams";
+    
+    /**
+     * Create an index from its parts.
+     * 
+     * @param width the width of the picture
+     * @param height the height of the picture
+     * @param vertical whether vertical seams were removed
+     * @param removed the number of seams removed
+     * @param ranks the step at which each pixel was removed
+     * @param energyId the class name of the energy function
+     */
+    private SeamOrderIndex(int width, int height, boolean vertical,
+                           int removed, IntBuffer ranks, String energyId) {
+        this.width = width;
+        this.height = height;
+        this.vertical = vertical;
+        this.removed = removed;
+        this.ranks = ranks;
+        this.energyId = energyId;
+    }
+    
+    /**
+     * Build the index of vertical seams for the given pixels, carving them
+     * down to the given width with the given energy function.
+     * 
+     * @param argb the colors of the pixels, row by row, packed as by
+     *        Color.getRGB()
+     * @param width the width of the picture
+     * @param height the height of the picture
+     * @param minWidth the narrowest width the index can retarget to
+     * @param energyFunction the energy function
+     * @return the index.
+     * @throws NullPointerException if <em>argb</em> or the energy function
+     *         is {@code null}.
+     * @throws IllegalArgumentException if the pixels do not match the
+     *         dimensions, or if <em>minWidth</em> is not between 1 and
+     *         <em>width</em>.
+     */
+    public static SeamOrderIndex vertical(int[] argb, int width, int height,
+                                          int minWidth,
+                                          EnergyFunction energyFunction) {
+        SeamCarver carver = new SeamCarver(argb, width, height, energyFunction);
+        if (minWidth < 1 || minWidth > width)
+            throw new java.lang.IllegalArgumentException("Invalid minimum width");
+        return build(carver, true, width - minWidth,
+                     energyFunction.getClass().getName());
+    }
+    
+    /**
+     * Build the index of horizontal seams for the given pixels, carving them
+     * down to the given height with the given energy function.
+     * 
+     * @param argb the colors of the pixels, row by row, packed as by
+     *        Color.getRGB()
+     * @param width the width of the picture
+     * @param height the height of the picture
+     * @param minHeight the shortest height the index can retarget to
+     * @param energyFunction the energy function
+     * @return the index.
+     * @throws NullPointerException if <em>argb</em> or the energy function
+     *         is {@code null}.
+     * @throws IllegalArgumentException if the pixels do not match the
+     *         dimensions, or if <em>minHeight</em> is not between 1 and
+     *         <em>height</em>.
+     */
+    public static SeamOrderIndex horizontal(int[] argb, int width, int height,
+                                            int minHeight,
+                                            EnergyFunction energyFunction) {
+        SeamCarver carver = new SeamCarver(argb, width, height, energyFunction);
+        if (minHeight < 1 || minHeight > height)
+            throw new java.lang.IllegalArgumentException("Invalid minimum height");
+        return build(carver, false, height - minHeight,
+                     energyFunction.getClass().getName());
+    }
+    
+    /**
+     * Carve the given number of seams from the given carver, recording the
+     * step at which each original pixel goes.
+     * 
+     * The carver only reports seams in current coordinates, so the original
+     * index of every remaining pixel is carried along in a buffer that is
+     * compacted exactly like the carver's own.
+     * 
+     * @param carver the carver, holding the whole picture
+     * @param vertical whether to remove vertical seams
+     * @param removed the number of seams to remove
+     * @param energyId the class name of the carver's energy function
+     * @return the index.
+     */
+    private static SeamOrderIndex build(SeamCarver carver, boolean vertical,
+                                        int removed, String energyId) {
+        int width = carver.width();
+        int height = carver.height();
+        carver.setIncremental(true);
+        
+        // Pixels that are never removed keep the last step
+        int[] ranks = new int[width * height];
+        Arrays.fill(ranks, removed);
+        
+        // The original index of each remaining pixel, row by row along the
+        // seams: the rows of the picture for vertical seams, its columns for
+        // horizontal ones
+        int lines = vertical ? height : width;
+        int length = vertical ? width : height;
+        int[] ids = new int[lines * length];
+        for (int i = 0; i < lines; i++) {
+            for (int j = 0; j < length; j++) {
+                ids[i * length + j] = vertical ? i * width + j : j * width + i;
+            }
+        }
+        
+        for (int step = 0; step < removed; step++) {
+            int[] seam = vertical ? carver.findVerticalSeam()
+                                  : carver.findHorizontalSeam();
+            int left = length - step;
+            for (int i = 0; i < lines; i++) {
+                int s = seam[i];
+                int line = i * length;
+                ranks[ids[line + s]] = step;
+                System.arraycopy(ids, line + s + 1, ids, line + s, left - s - 1);
+            }
+            
+            if (vertical) carver.removeVerticalSeam(seam);
+            else carver.removeHorizontalSeam(seam);
+        }
+        
+        return new SeamOrderIndex(width, height, vertical, removed,
+                                  IntBuffer.wrap(ranks), energyId);
+    }
+    
+    /**
+     * The file an index of the given picture is stored in by convention:
+     * the picture's own file name with ".seams" appended.
+     * 
+     * @param picture the file of the picture
+     * @return the file of its index.
+     */
+    public static Path sidecar(Path picture) {
+        return Paths.get(picture.toString() + SUFFIX);
+    }
+    
+    /**
+     * Write the index to the given file, replacing it if it exists.
+     * 
+     * @param file the file to write to
+     * @throws IOException if the file cannot be written.
+     */
+    public void write(Path file) throws IOException {
+        byte[] id = energyId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(headerSize(id.length))
+                                      .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height)
+              .putInt(vertical ? 1 : 0).putInt(removed).putInt(checksum())
+              .putInt(id.length).put(id);
+        header.position(0);
+        
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) channel.write(header);
+            
+            ByteBuffer chunk = ByteBuffer.allocate(1 << 16)
+                                         .order(ByteOrder.LITTLE_ENDIAN);
+            for (int p = 0; p < width * height; ) {
+                chunk.clear();
+                for (; p < width * height && chunk.remaining() >= 4; p++) {
+                    chunk.putInt(ranks.get(p));
+                }
+                chunk.flip();
+                while (chunk.hasRemaining()) channel.write(chunk);
+            }
+        }
+    }
+    
+    /**
+     * Map the index stored in the given file into memory, checking that its
+     * steps match their checksum.
+     * 
+     * @param file the file to map
+     * @return the index, reading its steps straight from the mapped file.
+     * @throws IOException if the file cannot be read, is not an index file
+     *         of a supported version, has a corrupt header, or fails its
+     *         checksum.
+     */
+    public static SeamOrderIndex map(Path file) throws IOException {
+        return map(file, true);
+    }
+    
+    /**
+     * Map the index stored in the given file into memory.
+     * 
+     * Checking the checksum reads the whole file once; skipping it leaves the
+     * steps to be paged in as they are used.
+     * 
+     * @param file the file to map
+     * @param verify whether to check the steps against their checksum
+     * @return the index, reading its steps straight from the mapped file.
+     * @throws IOException if the file cannot be read, is not an index file
+     *         of a supported version, has a corrupt header, or fails its
+     *         checksum.
+     */
+    public static SeamOrderIndex map(Path file, boolean verify)
+            throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Index file too large to map");
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        
+        if (buffer.remaining() < headerSize(0) || buffer.getInt() != MAGIC)
+            throw new IOException("Not a seam order index file");
+        if (buffer.getInt() != VERSION)
+            throw new IOException("Unsupported seam order index version");
+        
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        int axis = buffer.getInt();
+        int removed = buffer.getInt();
+        int checksum = buffer.getInt();
+        int idLength = buffer.getInt();
+        if (width < 0 || height < 0 || (axis != 0 && axis != 1) ||
+                removed < 0 || removed > (axis == 1 ? width : height) ||
+                idLength < 0 || idLength > buffer.remaining())
+            throw new IOException("Corrupt seam order index header");
+        boolean vertical = axis == 1;
+        
+        byte[] id = new byte[idLength];
+        buffer.get(id);
+        buffer.position(headerSize(idLength));
+        
+        if ((long) width * height * 4 != buffer.remaining())
+            throw new IOException("Seam order index has the wrong length");
+        
+        ByteBuffer steps = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        SeamOrderIndex index = new SeamOrderIndex(width, height, vertical,
+                removed, steps.asIntBuffer(),
+                new String(id, StandardCharsets.UTF_8));
+        
+        if (verify && index.checksum() != checksum)
+            throw new IOException("Seam order index fails its checksum");
+        return index;
+    }
+    
+    /**
+     * The size of the header of an index file.
+     * 
+     * @param idLength the length of the energy function id, in bytes
+     * @return the offset of the steps in the file.
+     */
+    private static int headerSize(int idLength) {
+        return 32 + ((idLength + 3) & ~3);
+    }
+    
+    /**
+     * The CRC-32 of the steps, as stored in a file.
+     * 
+     * @return the checksum.
+     */
+    private int checksum() {
+        CRC32 crc = new CRC32();
+        ByteBuffer chunk = ByteBuffer.allocate(1 << 16)
+                                     .order(ByteOrder.LITTLE_ENDIAN);
+        for (int p = 0; p < width * height; ) {
+            chunk.clear();
+            for (; p < width * height && chunk.remaining() >= 4; p++) {
+                chunk.putInt(ranks.get(p));
+            }
+            crc.update(chunk.array(), 0, chunk.position());
+        }
+        return (int) crc.getValue();
+    }
+    
+    /**
+     * Width of the picture the index was built from.
+     * 
+     * @return the original width.
+     */
+    public int width() {
+        return width;
+    }
+    
+    /**
+     * Height of the picture the index was built from.
+     * 
+     * @return the original height.
+     */
+    public int height() {
+        return height;
+    }
+    
+    /**
+     * Were vertical seams removed to build the index?
+     * 
+     * @return {@code true} if the index retargets the width,
+     *         {@code false} if it retargets the height.
+     */
+    public boolean isVertical() {
+        return vertical;
+    }
+    
+    /**
+     * The energy function the seams were found with.
+     * 
+     * @return the class name of the energy function.
+     */
+    public String energyId() {
+        return energyId;
+    }
+    
+    /**
+     * The memory the steps take up, on the heap or mapped.
+     * 
+     * @return the size of the steps, in bytes.
+     */
+    public long byteSize() {
+        return 4L * width * height;
+    }
+    
+    /**
+     * The smallest size the index can retarget to.
+     * 
+     * @return the minimum width for a vertical index, or the minimum height
+     *         for a horizontal one.
+     */
+    public int minSize() {
+        return (vertical ? width : height) - removed;
+    }
+    
+    /**
+     * The step at which the pixel at column x and row y was removed.
+     * 
+     * @param x
+     * @param y
+     * @return the step at which the pixel was removed, or
+     *         {@code width() - minSize()} (for a vertical index) if it
+     *         never was.
+     * @throws IndexOutOfBoundsException if <em>x</em> or <em>y</em> is
+     *         outside the picture.
+     */
+    public int rank(int x, int y) {
+        if (x >= width || y >= height || x < 0 || y < 0)
+            throw new java.lang.IndexOutOfBoundsException();
+        return ranks.get(y * width + x);
+    }
+    
+    /**
+     * Retarget the given pixels to the given size.
+     * 
+     * @param argb the colors of the pixels of the picture the index was built
+     *        from, row by row
+     * @param size the width to retarget to, for a vertical index, or the
+     *        height, for a horizontal one
+     * @return the colors of the retargeted picture, row by row.
+     * @throws NullPointerException if <em>argb</em> is {@code null}.
+     * @throws IllegalArgumentException if <em>argb</em> holds fewer pixels
+     *         than the picture, or if <em>size</em> is not between
+     *         minSize() and the original size.
+     */
+    public int[] retarget(int[] argb, int size) {
+        if (argb == null) throw new java.lang.NullPointerException();
+        if (argb.length < width * height)
+            throw new java.lang.IllegalArgumentException("Too few pixels");
+        if (size < minSize() || size > (vertical ? width : height))
+            throw new java.lang.IllegalArgumentException("Invalid size");
+        
+        // Pixels removed at an earlier step than this are carved away
+        int cut = (vertical ? width : height) - size;
+        
+        if (vertical) {
+            int[] out = new int[size * height];
+            int to = 0;
+            for (int p = 0; p < width * height; p++) {
+                if (ranks.get(p) >= cut) out[to++] = argb[p];
+            }
+            return out;
+        }
+        
+        // Walk row by row, keeping the next free row of each column
+        int[] out = new int[width * size];
+        int[] next = new int[width];
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                if (ranks.get(row + x) >= cut) out[next[x]++ * width + x] = argb[row + x];
+            }
+        }
+        return out;
+    }
+    
+    /**
+     * Retarget the given image to the given size.
+     * 
+     * @param image the picture the index was built from
+     * @param size the width to retarget to, for a vertical index, or the
+     *        height, for a horizontal one
+     * @return the retargeted picture, as a new image of type
+     *         {@code TYPE_INT_ARGB} if any pixel is not fully opaque, and of
+     *         type {@code TYPE_INT_RGB} otherwise.
+     * @throws NullPointerException if <em>image</em> is {@code null}.
+     * @throws IllegalArgumentException if the image is not the size of the
+     *         picture, or if <em>size</em> is not between minSize() and the
+     *         original size.
+     */
+    public BufferedImage retarget(BufferedImage image, int size) {
+        if (image == null) throw new java.lang.NullPointerException();
+        if (image.getWidth() != width || image.getHeight() != height)
+            throw new java.lang.IllegalArgumentException("Image size differs");
+        
+        int[] argb = image.getRGB(0, 0, width, height, null, 0, width);
+        int[] pixels = retarget(argb, size);
+        
+        int w = vertical ? size : width;
+        int h = vertical ? height : size;
+        return SeamCarver.toImage(pixels, w, h);
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2026 The seam-carving contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.princeton.cs.algs4;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import javax.imageio.ImageIO;
+
+/**
+ * A stand-in for the Picture class of Princeton's algs4 library, with the
+ * same names and behavior for the parts of its API the carver uses: a
+ * picture of width-by-height pixels, each read and written by column and
+ * row, with (0, 0) at the upper left.
+ * 
+ * Unlike the original, it cannot show itself in a window.
+ * 
+ * @author The seam-carving contributors
+ */
+public final class Picture {
+    private final BufferedImage image;
+    private final int width;
+    private final int height;
+    
+    /**
+     * Create a black picture of the given size.
+     * 
+     * @param width the width of the picture
+     * @param height the height of the picture
+     * @throws IllegalArgumentException if <em>width</em> or <em>height</em>
+     *         is negative.
+     */
+    public Picture(int width, int height) {
+        if (width < 0) throw new java.lang.IllegalArgumentException("width must be non-negative");
+        if (height < 0) throw new java.lang.IllegalArgumentException("height must be non-negative");
+        this.width = width;
+        this.height = height;
+        image = new BufferedImage(Math.max(width, 1), Math.max(height, 1),
+                                  BufferedImage.TYPE_INT_RGB);
+    }
+    
+    /**
+     * Create a copy of the given picture.
+     * 
+     * @param picture the picture to copy
+     * @throws NullPointerException if <em>picture</em> is {@code null}.
+     */
+    public Picture(Picture picture) {
+        this(picture.width, picture.height);
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                image.setRGB(col, row, picture.image.getRGB(col, row));
+            }
+        }
+    }
+    
+    /**
+     * Read a picture from a file or URL.
+     * 
+     * @param name the name of the file, or the URL
+     * @throws IllegalArgumentException if the picture cannot be read.
+     */
+    public Picture(String name) {
+        if (name == null) throw new java.lang.IllegalArgumentException("argument is null");
+        
+        BufferedImage read;
+        try {
+            File file = new File(name);
+            if (file.isFile()) read = ImageIO.read(file);
+            else read = ImageIO.read(new URL(name));
+        }
+        catch (IOException e) {
+            throw new java.lang.IllegalArgumentException("could not open image: " + name, e);
+        }
+        if (read == null)
+            throw new java.lang.IllegalArgumentException("could not read image: " + name);
+        
+        image = read;
+        width = read.getWidth();
+        height = read.getHeight();
+    }
+    
+    /**
+     * Read a picture from a file.
+     * 
+     * @param file the file
+     * @throws IllegalArgumentException if the picture cannot be read.
+     */
+    public Picture(File file) {
+        this(file.getPath());
+    }
+    
+    /**
+     * The width of the picture.
+     * 
+     * @return the width of the picture, in pixels.
+     */
+    public int width() {
+        return width;
+    }
+    
+    /**
+     * The height of the picture.
+     * 
+     * @return the height of the picture, in pixels.
+     */
+    public int height() {
+        return height;
+    }
+    
+    /**
+     * The color of the pixel at the given column and row.
+     * 
+     * @param col the column
+     * @param row the row
+     * @return the color of the pixel.
+     * @throws IllegalArgumentException if the pixel is outside the picture.
+     */
+    public Color get(int col, int row) {
+        return new Color(getRGB(col, row));
+    }
+    
+    /**
+     * The color of the pixel at the given column and row, packed as by
+     * Color.getRGB().
+     * 
+     * @param col the column
+     * @param row the row
+     * @return the color of the pixel.
+     * @throws IllegalArgumentException if the pixel is outside the picture.
+     */
+    public int getRGB(int col, int row) {
+        validate(col, row);
+        return image.getRGB(col, row);
+    }
+    
+    /**
+     * Set the color of the pixel at the given column and row.
+     * 
+     * @param col the column
+     * @param row the row
+     * @param color the color
+     * @throws IllegalArgumentException if the pixel is outside the picture,
+     *         or if <em>color</em> is {@code null}.
+     */
+    public void set(int col, int row, Color color) {
+        if (color == null) throw new java.lang.IllegalArgumentException("color argument is null");
+        setRGB(col, row, color.getRGB());
+    }
+    
+    /**
+     * Set the color of the pixel at the given column and row, packed as by
+     * Color.getRGB().
+     * 
+     * @param col the column
+     * @param row the row
+     * @param rgb the color
+     * @throws IllegalArgumentException if the pixel is outside the picture.
+     */
+    public void setRGB(int col, int row, int rgb) {
+        validate(col, row);
+        image.setRGB(col, row, rgb);
+    }
+    
+    /**
+     * Write the picture to a file, in the format its suffix names.
+     * 
+     * @param name the name of the file
+     * @throws IllegalArgumentException if the picture cannot be written.
+     */
+    public void save(String name) {
+        save(new File(name));
+    }
+    
+    /**
+     * Write the picture to a file, in the format its suffix names.
+     * 
+     * @param file the file
+     * @throws IllegalArgumentException if the picture cannot be written.
+     */
+    public void save(File file) {
+        String name = file.getName();
+        String suffix = name.substring(name.lastIndexOf('.') + 1);
+        try {
+            if (!ImageIO.write(image.getSubimage(0, 0, Math.max(width, 1), Math.max(height, 1)),
+                               suffix, file))
+                throw new java.lang.IllegalArgumentException("unsupported format: " + suffix);
+        }
+        catch (IOException e) {
+            throw new java.lang.IllegalArgumentException("could not write image: " + name, e);
+        }
+    }
+    
+    /**
+     * Check that a pixel lies within the picture.
+     * 
+     * @param col the column
+     * @param row the row
+     */
+    private void validate(int col, int row) {
+        if (col < 0 || col >= width)
+            throw new java.lang.IllegalArgumentException("column index must be between 0 and " + (width - 1) + ": " + col);
+        if (row < 0 || row >= height)
+            throw new java.lang.IllegalArgumentException("row index must be between 0 and " + (height - 1) + ": " + row);
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2026 The seam-carving contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package seamcarving.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Calls into the carver, which lives in the default package where JMH's
+ * generated code cannot name it.
+ * 
+ * Each method is reached through a method handle held in a static final
+ * field, which the JIT compiler treats as a constant and inlines, so a call
+ * costs what a direct call would.
+ * 
+ * @author The seam-carving contributors
+ */
+final class Carvers {
+    private static final MethodHandle NEW_CARVER;
+    private static final MethodHandle WIDTH;
+    private static final MethodHandle HEIGHT;
+    private static final MethodHandle FIND_HORIZONTAL;
+    private static final MethodHandle FIND_VERTICAL;
+    private static final MethodHandle REMOVE_HORIZONTAL;
+    private static final MethodHandle REMOVE_VERTICAL;
+    private static final MethodHandle REMOVE_HORIZONTALS;
+    private static final MethodHandle REMOVE_VERTICALS;
+    private static final MethodHandle SET_CHECKPOINT_INTERVAL;
+    private static final MethodHandle NEW_ENERGY;
+    private static final MethodHandle ENERGY;
+    
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> carver = Class.forName("SeamCarver");
+            Class<?> function = Class.forName("EnergyFunction");
+            Class<?> dualGradient = Class.forName("DualGradientEnergy");
+            
+            NEW_CARVER = erase(lookup.findConstructor(carver,
+                    MethodType.methodType(void.class, int[].class, int.class, int.class)));
+            WIDTH = erase(lookup.findVirtual(carver, "width",
+                    MethodType.methodType(int.class)));
+            HEIGHT = erase(lookup.findVirtual(carver, "height",
+                    MethodType.methodType(int.class)));
+            FIND_HORIZONTAL = erase(lookup.findVirtual(carver, "findHorizontalSeam",
+                    MethodType.methodType(int[].class)));
+            FIND_VERTICAL = erase(lookup.findVirtual(carver, "findVerticalSeam",
+                    MethodType.methodType(int[].class)));
+            REMOVE_HORIZONTAL = erase(lookup.findVirtual(carver, "removeHorizontalSeam",
+                    MethodType.methodType(void.class, int[].class)));
+            REMOVE_VERTICAL = erase(lookup.findVirtual(carver, "removeVerticalSeam",
+                    MethodType.methodType(void.class, int[].class)));
+            REMOVE_HORIZONTALS = erase(lookup.findVirtual(carver, "removeHorizontalSeams",
+                    MethodType.methodType(void.class, int.class)));
+            REMOVE_VERTICALS = erase(lookup.findVirtual(carver, "removeVerticalSeams",
+                    MethodType.methodType(void.class, int.class)));
+            SET_CHECKPOINT_INTERVAL = erase(lookup.findVirtual(carver, "setCheckpointInterval",
+                    MethodType.methodType(void.class, int.class)));
+            NEW_ENERGY = erase(lookup.findConstructor(dualGradient,
+                    MethodType.methodType(void.class)));
+            ENERGY = erase(lookup.findVirtual(function, "energy",
+                    MethodType.methodType(void.class, int[].class, int.class,
+                                          int.class, int.class, int.class,
+                                          double[].class)));
+        }
+        catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+    
+    private Carvers() { }
+    
+    /**
+     * Widen the carver and energy function types in a handle to Object.
+     */
+    private static MethodHandle erase(MethodHandle handle) {
+        MethodType type = handle.type();
+        if (type.returnType() != void.class && !type.returnType().isPrimitive()
+                && type.returnType() != int[].class)
+            type = type.changeReturnType(Object.class);
+        if (type.parameterCount() > 0 && !type.parameterType(0).isArray()
+                && !type.parameterType(0).isPrimitive())
+            type = type.changeParameterType(0, Object.class);
+        return handle.asType(type);
+    }
+    
+    /**
+     * Rethrow whatever a handle threw, unchecked.
+     */
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) return (RuntimeException) t;
+        if (t instanceof Error) throw (Error) t;
+        return new IllegalStateException(t);
+    }
+    
+    static Object newCarver(int[] argb, int width, int height) {
+        try {
+            return (Object) NEW_CARVER.invokeExact(argb, width, height);
+        }
+        catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+    
+    static int width(Object carver) {
+        try {
+            return (int) WIDTH.invokeExact(carver);
+        }
+        catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+    
+    static int height(Object carver) {
+        try {
+            return (int) HEIGHT.invokeExact(carver);
+        }
+        catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+    
+    static int[] findHorizontalSeam(Object carver) {
+        try {
+            return (int[]) FIND_HORIZONTAL.invokeExact(carver);
+        }
+        catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+    
+    static int[] findVerticalSeam(Object carver) {
+        try {
+            return (int[]) FIND_VERTICAL.invokeExact(carver);
+        }
+        catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+    
+    static void removeHorizontalSeam(Object carver, int[] seam) {
+        try {
+            REMOVE_HORIZONTAL.invokeExact(carver, seam);
+        }
+        catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+    
+    static void removeVerticalSeam(Object carver, int[] seam) {
+        try {
+            REMOVE_VERTICAL.invokeExact(carver, seam);
+        }
+        catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+    
+    static void removeHorizontalSeams(Object carver, int k) {
+        try {
+            REMOVE_HORIZONTALS.invokeExact(carver, k);
+        }
+        catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+    
+    static void removeVerticalSeams(Object carver, int k) {
+        try {
+            REMOVE_VERTICALS.invokeExact(carver, k);
+        }
+        catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+    
+    static void setCheckpointInterval(Object carver, int seams) {
+        try {
+            SET_CHECKPOINT_INTERVAL.invokeExact(carver, seams);
+        }
+        catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+    
+    static Object newDualGradientEnergy() {
+        try {
+            return (Object) NEW_ENERGY.invokeExact();
+        }
+        catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+    
+    static void energy(Object function, int[] argb, int offset, int stride,
+                       int width, int height, double[] out) {
+        try {
+            ENERGY.invokeExact(function, argb, offset, stride, width, height, out);
+        }
+        catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+}
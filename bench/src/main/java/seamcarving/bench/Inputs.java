@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2026 The seam-carving contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package seamcarving.bench;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import javax.imageio.ImageIO;
+
+/**
+ * The pictures the benchmarks carve.
+ * 
+ * An input is either the path of an image file, relative to the directory
+ * the benchmarks run in unless absolute, or a single number n for an n-by-n
+ * synthetic picture.
+ * 
+ * @author The seam-carving contributors
+ */
+final class Inputs {
+    
+    private Inputs() { }
+    
+    /**
+     * The pixels of an input, packed as by Color.getRGB(), row after row.
+     * 
+     * @param input the input
+     * @return the pixels, with the width and height appended as the last
+     *         two elements.
+     * @throws IOException if an image file cannot be read.
+     */
+    static int[] load(String input) throws IOException {
+        int width;
+        int height;
+        int[] argb;
+        
+        if (input.matches("[0-9]+")) {
+            width = Integer.parseInt(input);
+            height = width;
+            argb = new int[width * height + 2];
+            synthesize(argb, width, height);
+        }
+        else {
+            BufferedImage image = ImageIO.read(new File(input));
+            if (image == null) throw new IOException("Unreadable image: " + input);
+            width = image.getWidth();
+            height = image.getHeight();
+            argb = new int[width * height + 2];
+            image.getRGB(0, 0, width, height, argb, 0, width);
+        }
+        
+        argb[argb.length - 2] = width;
+        argb[argb.length - 1] = height;
+        return argb;
+    }
+    
+    /**
+     * Paint a synthetic picture: smooth gradients, which seams pass through
+     * cheaply, crossed by noisy bands and sharp-edged blocks, which they
+     * must route around. The same size always gives the same picture.
+     * 
+     * @param argb the pixels to paint
+     * @param width the width of the picture
+     * @param height the height of the picture
+     */
+    private static void synthesize(int[] argb, int width, int height) {
+        Random random = new Random(width * 31L + height);
+        
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = x * 255 / width;
+                int g = y * 255 / height;
+                int b = (x + y) * 127 / (width + height);
+                if ((y / 32) % 5 == 2) {
+                    r = (r + random.nextInt(64)) & 255;
+                    g = (g + random.nextInt(64)) & 255;
+                }
+                argb[y * width + x] = 0xFF000000 | r << 16 | g << 8 | b;
+            }
+        }
+        
+        for (int n = 0; n < 16; n++) {
+            int x0 = random.nextInt(width);
+            int y0 = random.nextInt(height);
+            int x1 = Math.min(width, x0 + 1 + random.nextInt(Math.max(1, width / 8)));
+            int y1 = Math.min(height, y0 + 1 + random.nextInt(Math.max(1, height / 8)));
+            int rgb = 0xFF000000 | random.nextInt(1 << 24);
+            for (int y = y0; y < y1; y++) {
+                for (int x = x0; x < x1; x++) argb[y * width + x] = rgb;
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2026 The seam-carving contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package seamcarving.bench;
+
+import java.io.IOException;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the benchmarks with JMH's usual command line, adding the GC profiler
+ * so that allocation is always reported next to time.
+ * 
+ * @author The seam-carving contributors
+ */
+public final class Main {
+    
+    private Main() { }
+    
+    /**
+     * @param args the command line arguments, as JMH takes them
+     * @throws CommandLineOptionException if the arguments are malformed.
+     * @throws IOException if the help cannot be printed.
+     * @throws RunnerException if a benchmark fails.
+     */
+    public static void main(String[] args)
+            throws CommandLineOptionException, IOException, RunnerException {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        if (cli.shouldHelp()) {
+            cli.showHelp();
+            return;
+        }
+        if (cli.shouldList() || cli.shouldListWithParams()) {
+            new Runner(cli).list();
+            return;
+        }
+        if (cli.shouldListProfilers()) {
+            cli.listProfilers();
+            return;
+        }
+        
+        Options options = new OptionsBuilder()
+                .parent(cli)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2026 The seam-carving contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package seamcarving.bench;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the carver's hot paths, on the images in img/ and on
+ * synthetic pictures from 256 by 256 up to 8192 by 8192.
+ * 
+ * Every benchmark runs on every input unless told otherwise, as in
+ * {@code -p input=img/HJocean.png,1024}. Run through Main, the GC profiler
+ * is on, so the allocation rate of each benchmark is reported beside its
+ * time.
+ * 
+ * @author The seam-carving contributors
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SeamCarverBenchmark {
+    
+    // The seams removed per iteration by the removal benchmarks, each from
+    // the carver the one before left; fewer than the smallest input's side
+    static final int SEAMS = 32;
+    
+    /**
+     * The pixels of the input, loaded once per trial.
+     */
+    @State(Scope.Benchmark)
+    public static class Input {
+        @Param({"img/HJocean.png", "img/banff.jpg", "img/camel.jpg",
+                "img/navy.jpg", "img/panorama.jpg",
+                "256", "1024", "2048", "4096", "8192"})
+        public String input;
+        
+        int[] argb;
+        int width;
+        int height;
+        
+        @Setup(Level.Trial)
+        public void load() throws IOException {
+            int[] loaded = Inputs.load(input);
+            width = loaded[loaded.length - 2];
+            height = loaded[loaded.length - 1];
+            argb = Arrays.copyOf(loaded, width * height);
+        }
+    }
+    
+    /**
+     * A carver of the input, built once per trial and never carved, so that
+     * every search sees the same picture.
+     */
+    @State(Scope.Thread)
+    public static class Carver {
+        Object carver;
+        
+        @Setup(Level.Trial)
+        public void build(Input input) {
+            carver = Carvers.newCarver(input.argb, input.width, input.height);
+        }
+    }
+    
+    /**
+     * A fresh carver each iteration, with the first SEAMS horizontal seams
+     * it will lose found beforehand on a copy, so that each invocation of
+     * the batch removes the next of them and nothing else.
+     */
+    @State(Scope.Thread)
+    public static class HorizontalRemoval {
+        Object carver;
+        int[][] seams;
+        int next;
+        
+        @Setup(Level.Iteration)
+        public void build(Input input) {
+            if (input.height <= SEAMS)
+                throw new IllegalStateException("Picture too short for a batch");
+            Object copy = Carvers.newCarver(input.argb, input.width, input.height);
+            seams = new int[SEAMS][];
+            for (int n = 0; n < SEAMS; n++) {
+                seams[n] = Carvers.findHorizontalSeam(copy);
+                Carvers.removeHorizontalSeam(copy, seams[n]);
+            }
+            carver = Carvers.newCarver(input.argb, input.width, input.height);
+            next = 0;
+        }
+    }
+    
+    /**
+     * A fresh carver each iteration, with the first SEAMS vertical seams it
+     * will lose found beforehand on a copy, so that each invocation of the
+     * batch removes the next of them and nothing else.
+     */
+    @State(Scope.Thread)
+    public static class VerticalRemoval {
+        Object carver;
+        int[][] seams;
+        int next;
+        
+        @Setup(Level.Iteration)
+        public void build(Input input) {
+            if (input.width <= SEAMS)
+                throw new IllegalStateException("Picture too narrow for a batch");
+            Object copy = Carvers.newCarver(input.argb, input.width, input.height);
+            seams = new int[SEAMS][];
+            for (int n = 0; n < SEAMS; n++) {
+                seams[n] = Carvers.findVerticalSeam(copy);
+                Carvers.removeVerticalSeam(copy, seams[n]);
+            }
+            carver = Carvers.newCarver(input.argb, input.width, input.height);
+            next = 0;
+        }
+    }
+    
+    /**
+     * A fresh carver for every retarget, taking seams out of the colors
+     * after every seam, as by default, or every 16 seams.
+     */
+    @State(Scope.Thread)
+    public static class Retarget {
+        @Param({"1", "16"})
+        int checkpoint;
+        
+        Object carver;
+        
+        @Setup(Level.Invocation)
+        public void build(Input input) {
+            carver = Carvers.newCarver(input.argb, input.width, input.height);
+            Carvers.setCheckpointInterval(carver, checkpoint);
+        }
+    }
+    
+    /**
+     * The energy function and the array its output goes to.
+     */
+    @State(Scope.Thread)
+    public static class Energy {
+        Object function;
+        double[] out;
+        
+        @Setup(Level.Trial)
+        public void build(Input input) {
+            function = Carvers.newDualGradientEnergy();
+            out = new double[input.width * input.height];
+        }
+    }
+    
+    /**
+     * Build a carver, which copies the pixels and calculates every energy.
+     */
+    @Benchmark
+    public Object construct(Input input) {
+        return Carvers.newCarver(input.argb, input.width, input.height);
+    }
+    
+    /**
+     * Calculate the energy of every pixel with the default energy function.
+     */
+    @Benchmark
+    public double[] energy(Input input, Energy energy) {
+        Carvers.energy(energy.function, input.argb, 0, input.width,
+                       input.width, input.height, energy.out);
+        return energy.out;
+    }
+    
+    /**
+     * Find a horizontal seam. After the first invocation the carver is
+     * already laid out for horizontal seams, so this times the search alone.
+     */
+    @Benchmark
+    public int[] findHorizontalSeam(Carver carver) {
+        return Carvers.findHorizontalSeam(carver.carver);
+    }
+    
+    /**
+     * Find a vertical seam.
+     */
+    @Benchmark
+    public int[] findVerticalSeam(Carver carver) {
+        return Carvers.findVerticalSeam(carver.carver);
+    }
+    
+    /**
+     * Remove a horizontal seam found beforehand. Each iteration is a batch
+     * of SEAMS removals from a fresh carver, timed as a whole, so the score
+     * is the time of the batch.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5, batchSize = SEAMS)
+    @Measurement(iterations = 10, batchSize = SEAMS)
+    public Object removeHorizontalSeam(HorizontalRemoval removal) {
+        Carvers.removeHorizontalSeam(removal.carver, removal.seams[removal.next++]);
+        return removal.carver;
+    }
+    
+    /**
+     * Remove a vertical seam found beforehand. Each iteration is a batch of
+     * SEAMS removals from a fresh carver, timed as a whole, so the score is
+     * the time of the batch.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5, batchSize = SEAMS)
+    @Measurement(iterations = 10, batchSize = SEAMS)
+    public Object removeVerticalSeam(VerticalRemoval removal) {
+        Carvers.removeVerticalSeam(removal.carver, removal.seams[removal.next++]);
+        return removal.carver;
+    }
+    
+    /**
+     * Retarget to half the width, then half the height, with batch removal.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public Object retargetHalf(Retarget retarget) {
+        Object carver = retarget.carver;
+        Carvers.removeVerticalSeams(carver, Carvers.width(carver) / 2);
+        Carvers.removeHorizontalSeams(carver, Carvers.height(carver) / 2);
+        return carver;
+    }
+}
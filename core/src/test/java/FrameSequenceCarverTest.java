@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2026 The seam-carving contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a sequence of frames carves as each frame would on its own
+ * when every search is a full one, and checks the command line.
+ * 
+ * @author The seam-carving contributors
+ */
+public class FrameSequenceCarverTest {
+    
+    // The size of the frames, and how many there are
+    private static final int WIDTH = 80;
+    private static final int HEIGHT = 45;
+    private static final int FRAMES = 12;
+    
+    @TempDir
+    Path directory;
+    
+    /**
+     * Frames of a picture panning across a wider one, a column a frame.
+     * 
+     * @param random the source of the colors
+     * @return the colors of the pixels of each frame, row by row.
+     */
+    private static int[][] panning(Random random) {
+        int wider = WIDTH + FRAMES;
+        int[] scene = SeamCarverTest.randomPicture(random, wider, HEIGHT);
+        int[][] frames = new int[FRAMES][WIDTH * HEIGHT];
+        for (int f = 0; f < FRAMES; f++) {
+            for (int y = 0; y < HEIGHT; y++) {
+                System.arraycopy(scene, y * wider + f, frames[f], y * WIDTH, WIDTH);
+            }
+        }
+        return frames;
+    }
+    
+    /**
+     * The colors of a frame carved on its own to the given size, by finding
+     * and removing one seam after another and by seam insertion.
+     * 
+     * @param argb the colors of the pixels, row by row
+     * @param w the width to carve to
+     * @param h the height to carve to
+     * @return the colors of the carved frame, row by row.
+     */
+    private static int[] carve(int[] argb, int w, int h) {
+        SeamCarver carver = new SeamCarver(argb, WIDTH, HEIGHT);
+        while (carver.width() > w) carver.removeVerticalSeam(carver.findVerticalSeam());
+        while (carver.width() < w)
+            carver.insertVerticalSeams(Math.min(w - carver.width(), carver.width()));
+        while (carver.height() > h) carver.removeHorizontalSeam(carver.findHorizontalSeam());
+        while (carver.height() < h)
+            carver.insertHorizontalSeams(Math.min(h - carver.height(), carver.height()));
+        return carver.toArgb();
+    }
+    
+    /**
+     * Carve the given frames with the given carver.
+     * 
+     * @param carver the carver
+     * @param frames the colors of the pixels of each frame
+     * @return the colors of the pixels of each carved frame.
+     * @throws IOException never, as the frames are in memory.
+     * @throws InterruptedException if interrupted while waiting for a frame.
+     */
+    private static List<int[]> carveAll(FrameSequenceCarver carver, int[][] frames)
+            throws IOException, InterruptedException {
+        List<int[]> carved = new ArrayList<>();
+        long n = carver.carve(
+            (frame, argb) -> {
+                if (frame == frames.length) return false;
+                System.arraycopy(frames[frame], 0, argb, 0, WIDTH * HEIGHT);
+                return true;
+            },
+            (frame, argb, w, h) -> {
+                assertEquals(carved.size(), frame);
+                carved.add(Arrays.copyOf(argb, w * h));
+            });
+        assertEquals(frames.length, n);
+        assertEquals(frames.length, carver.frames());
+        return carved;
+    }
+    
+    @Test
+    public void fullSearchesCarveEachFrameAsAlone() throws Exception {
+        int[][] frames = panning(new Random(2017));
+        for (int[] target: new int[][] {{60, 35}, {100, 30}, {50, 60}}) {
+            
+            // Every frame a key frame, or a band as wide as the frame
+            FrameSequenceCarver keyFrames = new FrameSequenceCarver(WIDTH, HEIGHT,
+                    target[0], target[1], new DualGradientEnergy(), 4, 1, 2);
+            FrameSequenceCarver wideBand = new FrameSequenceCarver(WIDTH, HEIGHT,
+                    target[0], target[1], new DualGradientEnergy(), WIDTH, 30, 3);
+            List<int[]> byKeyFrames = carveAll(keyFrames, frames);
+            List<int[]> byWideBand = carveAll(wideBand, frames);
+            for (int f = 0; f < FRAMES; f++) {
+                int[] alone = carve(frames[f], target[0], target[1]);
+                assertArrayEquals(alone, byKeyFrames.get(f), "frame " + f);
+                assertArrayEquals(alone, byWideBand.get(f), "frame " + f);
+            }
+        }
+    }
+    
+    @Test
+    public void stillFramesKeepTheirSeams() throws Exception {
+        int[] frame = SeamCarverTest.randomPicture(new Random(2018), WIDTH, HEIGHT);
+        int[][] frames = new int[FRAMES][];
+        Arrays.fill(frames, frame);
+        
+        FrameSequenceCarver carver = new FrameSequenceCarver(WIDTH, HEIGHT, 60, 35);
+        List<int[]> carved = carveAll(carver, frames);
+        assertEquals(0.0, carver.jitter(), 0.0);
+        for (int[] argb: carved) assertArrayEquals(carved.get(0), argb);
+    }
+    
+    @Test
+    public void failuresPropagate() {
+        FrameSequenceCarver carver = new FrameSequenceCarver(WIDTH, HEIGHT, 60, 35);
+        IOException source = assertThrows(IOException.class, () -> carver.carve(
+                (frame, argb) -> {
+                    if (frame == 5) throw new IOException("source");
+                    return true;
+                },
+                (frame, argb, w, h) -> { }));
+        assertEquals("source", source.getMessage());
+        IOException sink = assertThrows(IOException.class, () -> carver.carve(
+                (frame, argb) -> true,
+                (frame, argb, w, h) -> {
+                    if (frame == 3) throw new IOException("sink");
+                }));
+        assertEquals("sink", sink.getMessage());
+    }
+    
+    @Test
+    public void commandLineCarvesADirectory() throws Exception {
+        int[][] frames = panning(new Random(2019));
+        Path input = Files.createDirectories(directory.resolve("in"));
+        for (int f = 0; f < 3; f++) {
+            BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+            image.setRGB(0, 0, WIDTH, HEIGHT, frames[f], 0, WIDTH);
+            ImageIO.write(image, "png", input.resolve("frame" + f + ".png").toFile());
+        }
+        Path output = directory.resolve("out");
+        
+        assertEquals(0, FrameSequenceCarver.run(new String[] {
+                input.toString(), "60", "40", output.toString(), "3"}));
+        for (int f = 0; f < 3; f++) {
+            BufferedImage image = ImageIO.read(output.resolve("frame" + f + ".png").toFile());
+            assertEquals(60, image.getWidth());
+            assertEquals(40, image.getHeight());
+        }
+    }
+    
+    @Test
+    public void commandLineReportsBadArguments() throws Exception {
+        Path empty = Files.createDirectories(directory.resolve("empty"));
+        Path file = Files.write(directory.resolve("frame.png"), new byte[0]);
+        String out = directory.resolve("out").toString();
+        
+        assertEquals(2, FrameSequenceCarver.run(new String[] {empty.toString(), "5"}));
+        assertEquals(2, FrameSequenceCarver.run(new String[] {
+                empty.toString(), "five", "5", out}));
+        assertEquals(2, FrameSequenceCarver.run(new String[] {
+                empty.toString(), "5", "5", out, "wide"}));
+        assertEquals(2, FrameSequenceCarver.run(new String[] {
+                empty.toString(), "5", "0", out}));
+        assertEquals(2, FrameSequenceCarver.run(new String[] {
+                empty.toString(), "5", "5", out, "-1"}));
+        assertEquals(2, FrameSequenceCarver.run(new String[] {
+                directory.resolve("missing").toString(), "5", "5", out}));
+        assertEquals(2, FrameSequenceCarver.run(new String[] {
+                file.toString(), "5", "5", out}));
+        assertEquals(2, FrameSequenceCarver.run(new String[] {
+                empty.toString(), "5", "5", out}));
+        assertFalse(Files.exists(directory.resolve("out")));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2026 The seam-carving contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that the file-backed carver carves exactly as the in-memory one
+ * does, and that it leaves no files behind.
+ * 
+ * @author The seam-carving contributors
+ */
+public class MappedSeamCarverTest {
+    
+    @TempDir
+    Path directory;
+    
+    /**
+     * The number of files in the directory the carvers are given.
+     * 
+     * @return the number of files.
+     * @throws IOException if the directory cannot be listed.
+     */
+    private long files() throws IOException {
+        try (Stream<Path> list = Files.list(directory)) {
+            return list.count();
+        }
+    }
+    
+    @Test
+    public void carvesAsSeamCarverDoes() throws IOException {
+        Random random = new Random(2017);
+        int width = 90;
+        int height = 70;
+        int[] argb = SeamCarverTest.randomPicture(random, width, height);
+        
+        SeamCarver expected = new SeamCarver(argb, width, height);
+        
+        // Tiles of a few rows each, so that rows are read across tiles
+        try (MappedSeamCarver carver = new MappedSeamCarver(width, height,
+                (y, row) -> System.arraycopy(argb, y * width, row, 0, width),
+                directory, new DualGradientEnergy(), 1000)) {
+            for (int step = 0; step < 60; step++) {
+                boolean vertical = random.nextInt(3) != 0;
+                int[] seam = vertical ? expected.findVerticalSeam()
+                                      : expected.findHorizontalSeam();
+                int[] other = vertical ? carver.findVerticalSeam()
+                                       : carver.findHorizontalSeam();
+                assertArrayEquals(seam, other, "step " + step);
+                
+                if (vertical) {
+                    expected.removeVerticalSeam(seam);
+                    carver.removeVerticalSeam(other);
+                }
+                else {
+                    expected.removeHorizontalSeam(seam);
+                    carver.removeHorizontalSeam(other);
+                }
+            }
+            
+            assertEquals(expected.width(), carver.width());
+            assertEquals(expected.height(), carver.height());
+            for (int y = 0; y < carver.height(); y++) {
+                for (int x = 0; x < carver.width(); x++) {
+                    assertEquals(expected.energy(x, y), carver.energy(x, y), 0.0,
+                            "energy(" + x + ", " + y + ")");
+                }
+            }
+            
+            int w = carver.width();
+            int[] pixels = new int[w * carver.height()];
+            carver.writeRows((y, row) -> System.arraycopy(row, 0, pixels, y * w, w));
+            assertArrayEquals(expected.toArgb(), pixels);
+        }
+        assertEquals(0, files());
+    }
+    
+    @Test
+    public void failedConstructionLeavesNoFiles() throws IOException {
+        assertThrows(IllegalStateException.class, () -> new MappedSeamCarver(
+                20, 20, (y, row) -> {
+                    if (y == 7) throw new IllegalStateException();
+                },
+                directory, new DualGradientEnergy(), 100));
+        assertEquals(0, files());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2026 The seam-carving contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks the command line retargeter: the files it writes, what they hold,
+ * and its exit status.
+ * 
+ * @author The seam-carving contributors
+ */
+public class SeamCarverMainTest {
+    
+    @TempDir
+    Path directory;
+    
+    /**
+     * Write a random picture as a PNG file.
+     * 
+     * @param file the file to write
+     * @param random the source of the colors
+     * @param width the width of the picture
+     * @param height the height of the picture
+     * @return the colors of the pixels, row by row.
+     * @throws IOException if the file cannot be written.
+     */
+    private static int[] writePicture(Path file, Random random, int width,
+                                      int height) throws IOException {
+        int[] argb = SeamCarverTest.randomPicture(random, width, height);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, width, height, argb, 0, width);
+        Files.createDirectories(file.getParent());
+        ImageIO.write(image, "png", file.toFile());
+        return argb;
+    }
+    
+    /**
+     * The colors of a picture carved down to the given size by finding and
+     * removing one seam after another.
+     * 
+     * @param argb the colors of the pixels, row by row
+     * @param width the width of the picture
+     * @param height the height of the picture
+     * @param w the width to carve down to
+     * @param h the height to carve down to
+     * @return the colors of the carved picture, row by row.
+     */
+    private static int[] carve(int[] argb, int width, int height, int w, int h) {
+        SeamCarver carver = new SeamCarver(argb, width, height);
+        while (carver.width() > w) carver.removeVerticalSeam(carver.findVerticalSeam());
+        while (carver.height() > h) carver.removeHorizontalSeam(carver.findHorizontalSeam());
+        return carver.toArgb();
+    }
+    
+    /**
+     * The colors of the pixels in an image file.
+     * 
+     * @param file the file to read
+     * @return the colors of the pixels, row by row.
+     * @throws IOException if the file cannot be read.
+     */
+    private static int[] readPicture(Path file) throws IOException {
+        BufferedImage image = ImageIO.read(file.toFile());
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null,
+                            0, image.getWidth());
+    }
+    
+    @Test
+    public void retargetsAManifestIntoMirroredPaths() throws Exception {
+        Random random = new Random(2017);
+        Path input = directory.resolve("in");
+        int[] a = writePicture(input.resolve("a.png"), random, 40, 30);
+        int[] b = writePicture(input.resolve("sub/b.png"), random, 20, 50);
+        Path manifest = input.resolve("list.txt");
+        Files.write(manifest, Arrays.asList("# pictures", "a.png", "", "sub/b.png"));
+        Path output = directory.resolve("out");
+        
+        assertEquals(0, SeamCarver.run(new String[] {
+                manifest.toString(), "50%", "80%", output.toString(), "2"}));
+        assertArrayEquals(carve(a, 40, 30, 20, 24), readPicture(output.resolve("a.png")));
+        assertArrayEquals(carve(b, 20, 50, 10, 40), readPicture(output.resolve("sub/b.png")));
+    }
+    
+    @Test
+    public void widensByInsertion() throws Exception {
+        Random random = new Random(2018);
+        Path input = directory.resolve("in");
+        int[] a = writePicture(input.resolve("a.png"), random, 30, 20);
+        Path output = directory.resolve("out");
+        
+        assertEquals(0, SeamCarver.run(new String[] {
+                input.toString(), "40", "20", output.toString()}));
+        SeamCarver expected = new SeamCarver(a, 30, 20);
+        expected.insertVerticalSeams(10);
+        assertArrayEquals(expected.toArgb(), readPicture(output.resolve("a.png")));
+    }
+    
+    @Test
+    public void reportsBadArgumentsBeforeDecoding() throws Exception {
+        Path input = directory.resolve("in");
+        writePicture(input.resolve("a.png"), new Random(2019), 10, 10);
+        Path manifest = input.resolve("list.txt");
+        Files.write(manifest, Arrays.asList("a.png", "./a.png"));
+        String in = input.toString();
+        String out = directory.resolve("out").toString();
+        
+        assertEquals(2, SeamCarver.run(new String[] {in, "5", "5"}));
+        assertEquals(2, SeamCarver.run(new String[] {in, "five", "5", out}));
+        assertEquals(2, SeamCarver.run(new String[] {in, "5", "0%", out}));
+        assertEquals(2, SeamCarver.run(new String[] {in, "5", "5", out, "0"}));
+        assertEquals(2, SeamCarver.run(new String[] {
+                directory.resolve("missing").toString(), "5", "5", out}));
+        assertEquals(2, SeamCarver.run(new String[] {manifest.toString(), "5", "5", out}));
+        assertFalse(Files.exists(directory.resolve("out")));
+    }
+    
+    @Test
+    public void failsOnUnreadableImages() throws Exception {
+        Path input = directory.resolve("in");
+        writePicture(input.resolve("a.png"), new Random(2020), 10, 10);
+        Files.write(input.resolve("b.png"), new byte[] {1, 2, 3});
+        Path output = directory.resolve("out");
+        
+        assertEquals(1, SeamCarver.run(new String[] {
+                input.toString(), "5", "5", output.toString()}));
+        assertEquals(5, ImageIO.read(output.resolve("a.png").toFile()).getWidth());
+        assertFalse(Files.exists(output.resolve("b.png")));
+    }
+}
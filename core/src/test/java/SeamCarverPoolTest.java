@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2026 The seam-carving contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that pooled carvers carve exactly as new ones do, whatever they
+ * carved before, that the pool keeps to its bound, and that snapshots do
+ * not change as the carving goes on.
+ * 
+ * @author The seam-carving contributors
+ */
+public class SeamCarverPoolTest {
+    
+    /**
+     * Carve a leased carver and a new one side by side, checking that they
+     * find the same seams and end with the same pixels.
+     * 
+     * @param leased the leased carver
+     * @param fresh a new carver of the same picture
+     * @param random the source of the directions of the seams
+     */
+    private static void carveAlike(SeamCarver leased, SeamCarver fresh, Random random) {
+        assertArrayEquals(fresh.toArgb(), leased.toArgb());
+        for (int step = 0; step < 8; step++) {
+            boolean vertical = random.nextBoolean();
+            int[] seam = vertical ? fresh.findVerticalSeam() : fresh.findHorizontalSeam();
+            int[] other = vertical ? leased.findVerticalSeam() : leased.findHorizontalSeam();
+            assertArrayEquals(seam, other, "step " + step);
+            if (vertical) {
+                fresh.removeVerticalSeam(seam);
+                leased.removeVerticalSeam(seam);
+            }
+            else {
+                fresh.removeHorizontalSeam(seam);
+                leased.removeHorizontalSeam(seam);
+            }
+        }
+        assertArrayEquals(fresh.toArgb(), leased.toArgb());
+    }
+    
+    @Test
+    public void reusedCarversCarveAsNewOnes() {
+        Random random = new Random(2017);
+        SeamCarverPool pool = new SeamCarverPool(Long.MAX_VALUE);
+        
+        // A large picture carved with every setting changed
+        int[] large = SeamCarverTest.randomPicture(random, 70, 50);
+        SeamCarver first = pool.lease(large, 70, 50);
+        first.setIncremental(true);
+        first.setLowMemory(true);
+        first.setPrecision(SeamCarver.Precision.FIXED);
+        first.setCheckpointInterval(16);
+        first.removeVerticalSeams(20);
+        first.insertHorizontalSeams(5);
+        pool.release(first);
+        assertEquals(1, pool.idle());
+        
+        // A smaller picture reuses it, with the settings of a new carver
+        int[] small = SeamCarverTest.randomPicture(random, 40, 30);
+        SeamCarver second = pool.lease(small, 40, 30);
+        assertSame(first, second);
+        assertEquals(0, pool.idle());
+        carveAlike(second, new SeamCarver(small, 40, 30), random);
+        pool.release(second);
+        
+        // And so does an image
+        BufferedImage image = new BufferedImage(50, 40, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 50, 40, SeamCarverTest.randomPicture(random, 50, 40), 0, 50);
+        SeamCarver third = pool.lease(image);
+        assertSame(first, third);
+        carveAlike(third, new SeamCarver(image), random);
+        pool.release(third);
+    }
+    
+    @Test
+    public void idleCarversKeepToTheBound() {
+        Random random = new Random(2018);
+        int[] argb = SeamCarverTest.randomPicture(random, 30, 20);
+        long size = new SeamCarver(argb, 30, 20).retainedBytes();
+        
+        // Room for two idle carvers; the one idle longest goes first
+        SeamCarverPool pool = new SeamCarverPool(2 * size);
+        SeamCarver[] carvers = new SeamCarver[3];
+        for (int n = 0; n < 3; n++) carvers[n] = pool.lease(argb, 30, 20);
+        for (SeamCarver carver: carvers) pool.release(carver);
+        assertEquals(2, pool.idle());
+        assertEquals(2 * size, pool.bytes());
+        assertSame(carvers[1], pool.lease(argb, 30, 20));
+        assertSame(carvers[2], pool.lease(argb, 30, 20));
+        
+        // A carver larger than the whole bound is let go at once
+        SeamCarverPool tiny = new SeamCarverPool(size - 1);
+        tiny.release(tiny.lease(argb, 30, 20));
+        assertEquals(0, tiny.idle());
+        assertEquals(0, tiny.bytes());
+        
+        // Only carvers leased and not yet released can be released
+        SeamCarver leased = pool.lease(argb, 30, 20);
+        pool.release(leased);
+        assertThrows(IllegalArgumentException.class, () -> pool.release(leased));
+        assertThrows(IllegalArgumentException.class,
+                () -> pool.release(new SeamCarver(argb, 30, 20)));
+    }
+    
+    @Test
+    public void threadsShareAPool() throws Exception {
+        SeamCarverPool pool = new SeamCarverPool(400_000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int task = 0; task < 64; task++) {
+                long seed = task;
+                tasks.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    int width = 10 + random.nextInt(40);
+                    int height = 10 + random.nextInt(40);
+                    int[] argb = SeamCarverTest.randomPicture(random, width, height);
+                    SeamCarver carver = pool.lease(argb, width, height);
+                    if (seed % 3 == 0) carver.setIncremental(true);
+                    carveAlike(carver, new SeamCarver(argb, width, height), random);
+                    pool.release(carver);
+                    return null;
+                }));
+            }
+            for (Future<?> task: tasks) task.get();
+        }
+        finally {
+            executor.shutdown();
+        }
+        assertTrue(pool.bytes() <= 400_000);
+    }
+    
+    @Test
+    public void snapshotsDoNotChange() {
+        Random random = new Random(2019);
+        int[] argb = SeamCarverTest.randomPicture(random, 40, 30);
+        SeamCarver carver = new SeamCarver(argb, 40, 30);
+        SeamCarver.Snapshot snapshot = carver.snapshot();
+        
+        double[] energy = new double[40 * 30];
+        for (int y = 0; y < 30; y++) {
+            for (int x = 0; x < 40; x++) energy[y * 40 + x] = carver.energy(x, y);
+        }
+        carver.removeVerticalSeams(10);
+        carver.insertHorizontalSeams(4);
+        
+        assertEquals(40, snapshot.width());
+        assertEquals(30, snapshot.height());
+        assertArrayEquals(argb, snapshot.toArgb());
+        assertArrayEquals(argb, snapshot.toBufferedImage().getRGB(0, 0, 40, 30, null, 0, 40));
+        for (int y = 0; y < 30; y++) {
+            for (int x = 0; x < 40; x++) {
+                assertEquals(energy[y * 40 + x], snapshot.energy(x, y), 0.0);
+            }
+        }
+        
+        SeamCarver.Snapshot later = carver.snapshot();
+        assertArrayEquals(carver.toArgb(), later.toArgb());
+        assertEquals(carver.energy(7, 9), later.energy(7, 9), 0.0);
+    }
+}
@@ -0,0 +1,542 @@
+/*
+ * Copyright (C) 2026 The seam-carving contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the carver against a known fixture, and checks that its modes all
+ * find and remove the same seams.
+ * 
+ * The fixture is the 6-by-5 picture of the Princeton seam carving
+ * assignment, whose energies and shortest seam costs are published with it.
+ * The published seams break ties to the left; this carver breaks them to
+ * the right, so its seams differ but cost exactly as much.
+ * 
+ * @author The seam-carving contributors
+ */
+public class SeamCarverTest {
+    
+    // The colors of the 6-by-5 fixture, row by row
+    private static final int[][] RGB_6X5 = {
+        {78, 209, 79}, {63, 118, 247}, {92, 175, 95},
+        {243, 73, 183}, {210, 109, 104}, {252, 101, 119},
+        {224, 191, 182}, {108, 89, 82}, {80, 196, 230},
+        {112, 156, 180}, {176, 178, 120}, {142, 151, 142},
+        {117, 189, 149}, {171, 231, 153}, {149, 164, 168},
+        {107, 119, 71}, {120, 105, 138}, {163, 174, 196},
+        {163, 222, 132}, {187, 117, 183}, {92, 145, 69},
+        {158, 143, 79}, {220, 75, 222}, {189, 73, 214},
+        {211, 120, 173}, {188, 218, 244}, {214, 103, 68},
+        {163, 166, 246}, {79, 125, 246}, {211, 201, 98}
+    };
+    
+    // The published dual-gradient energy of the fixture, row by row
+    private static final double[][] ENERGY_6X5 = {
+        {1000.00, 1000.00, 1000.00, 1000.00, 1000.00, 1000.00},
+        {1000.00,  237.35,  151.02,  234.09,  107.89, 1000.00},
+        {1000.00,  138.69,  228.10,  133.07,  211.51, 1000.00},
+        {1000.00,  153.88,  174.01,  284.01,  194.50, 1000.00},
+        {1000.00, 1000.00, 1000.00, 1000.00, 1000.00, 1000.00}
+    };
+    
+    // The seed of the random pictures the modes are compared on
+    private static final long SEED = 2017;
+    
+    /**
+     * A carver of the 6-by-5 fixture.
+     * 
+     * @return the carver.
+     */
+    private static SeamCarver fixture() {
+        int[] argb = new int[RGB_6X5.length];
+        for (int p = 0; p < argb.length; p++) {
+            int[] c = RGB_6X5[p];
+            argb[p] = 0xFF000000 | c[0] << 16 | c[1] << 8 | c[2];
+        }
+        return new SeamCarver(argb, 6, 5);
+    }
+    
+    /**
+     * A random picture with few distinct colors, so that many paths tie.
+     * 
+     * @param random the source of the colors
+     * @param width the width of the picture
+     * @param height the height of the picture
+     * @return the colors of the pixels, row by row.
+     */
+    static int[] randomPicture(Random random, int width, int height) {
+        int[] argb = new int[width * height];
+        for (int p = 0; p < argb.length; p++) {
+            argb[p] = 0xFF000000 | random.nextInt(4) * 0x3F0000
+                    | random.nextInt(4) * 0x3F00 | random.nextInt(4) * 0x3F;
+        }
+        return argb;
+    }
+    
+    /**
+     * The colors of a picture with the given vertical seams inserted, each
+     * seam pixel followed by the average of it and its neighbor on the
+     * right, or on the left at the right edge.
+     * 
+     * @param argb the colors of the pixels, row by row
+     * @param width the width of the picture
+     * @param seams the seams to insert, which share no pixel
+     * @return the colors of the widened picture, row by row.
+     */
+    private static int[] widen(int[] argb, int width, int[][] seams) {
+        int height = argb.length / width;
+        int wider = width + seams.length;
+        int[] out = new int[wider * height];
+        for (int y = 0; y < height; y++) {
+            boolean[] cut = new boolean[width];
+            for (int[] seam: seams) cut[seam[y]] = true;
+            
+            int to = y * wider;
+            for (int x = 0; x < width; x++) {
+                int pixel = argb[y * width + x];
+                out[to++] = pixel;
+                if (cut[x]) {
+                    int other = argb[y * width + (x + 1 < width ? x + 1 : x - 1)];
+                    int average = 0;
+                    for (int shift = 0; shift < 32; shift += 8) {
+                        average |= (((pixel >>> shift & 0xFF)
+                                     + (other >>> shift & 0xFF)) / 2) << shift;
+                    }
+                    out[to++] = average;
+                }
+            }
+        }
+        return out;
+    }
+    
+    /**
+     * The colors of a picture turned a quarter turn, so that its rows
+     * become columns.
+     * 
+     * @param argb the colors of the pixels, row by row
+     * @param width the width of the picture
+     * @return the colors of the transposed picture, row by row.
+     */
+    private static int[] transpose(int[] argb, int width) {
+        int height = argb.length / width;
+        int[] out = new int[argb.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) out[x * height + y] = argb[y * width + x];
+        }
+        return out;
+    }
+    
+    @Test
+    public void energyMatchesFixture() {
+        SeamCarver carver = fixture();
+        for (int y = 0; y < 5; y++) {
+            for (int x = 0; x < 6; x++) {
+                assertEquals(ENERGY_6X5[y][x], carver.energy(x, y), 0.005,
+                        "energy(" + x + ", " + y + ")");
+            }
+        }
+    }
+    
+    @Test
+    public void verticalSeamMatchesFixture() {
+        SeamCarver carver = fixture();
+        int[] seam = carver.findVerticalSeam();
+        assertArrayEquals(new int[] {5, 4, 3, 2, 3}, seam);
+        assertEquals(2414.97, carver.verticalSeamCost(seam), 0.005);
+    }
+    
+    @Test
+    public void horizontalSeamMatchesFixture() {
+        SeamCarver carver = fixture();
+        int[] seam = carver.findHorizontalSeam();
+        assertArrayEquals(new int[] {3, 2, 1, 2, 1, 2}, seam);
+        assertEquals(2530.68, carver.horizontalSeamCost(seam), 0.005);
+    }
+    
+    @Test
+    public void modesFindTheSameSeams() {
+        Random random = new Random(SEED);
+        
+        // Wide enough that the parallel carver splits its rows
+        int width = 2100;
+        int height = 12;
+        int[] argb = randomPicture(random, width, height);
+        
+        SeamCarver serial = new SeamCarver(argb, width, height);
+        SeamCarver incremental = new SeamCarver(argb, width, height);
+        incremental.setIncremental(true);
+        SeamCarver parallel = new SeamCarver(argb, width, height);
+        parallel.setParallelism(2);
+        SeamCarver lowMemory = new SeamCarver(argb, width, height);
+        lowMemory.setLowMemory(true);
+        SeamCarver[] modes = {incremental, parallel, lowMemory};
+        
+        for (int step = 0; step < 30; step++) {
+            boolean vertical = step % 5 != 4;
+            int[] seam = vertical ? serial.findVerticalSeam()
+                                  : serial.findHorizontalSeam();
+            for (SeamCarver carver: modes) {
+                int[] other = vertical ? carver.findVerticalSeam()
+                                       : carver.findHorizontalSeam();
+                assertArrayEquals(seam, other, "step " + step);
+            }
+            
+            if (vertical) serial.removeVerticalSeam(seam);
+            else serial.removeHorizontalSeam(seam);
+            for (SeamCarver carver: modes) {
+                if (vertical) carver.removeVerticalSeam(seam);
+                else carver.removeHorizontalSeam(seam);
+            }
+        }
+        parallel.setParallelism(1);
+        
+        for (SeamCarver carver: modes) {
+            assertEquals(serial.width(), carver.width());
+            assertEquals(serial.height(), carver.height());
+            assertArrayEquals(serial.toArgb(), carver.toArgb());
+        }
+    }
+    
+    @Test
+    public void batchRemovesTheSameSeams() {
+        Random random = new Random(SEED + 1);
+        int width = 64;
+        int height = 48;
+        int[] argb = randomPicture(random, width, height);
+        
+        SeamCarver serial = new SeamCarver(argb, width, height);
+        for (int k = 0; k < 40; k++) serial.removeVerticalSeam(serial.findVerticalSeam());
+        for (int k = 0; k < 20; k++) serial.removeHorizontalSeam(serial.findHorizontalSeam());
+        
+        // Compacting the colors after every seam, and every 16 seams
+        for (int interval: new int[] {1, 16}) {
+            SeamCarver batch = new SeamCarver(argb, width, height);
+            batch.setCheckpointInterval(interval);
+            batch.removeVerticalSeams(40);
+            batch.removeHorizontalSeams(20);
+            
+            assertEquals(serial.width(), batch.width());
+            assertEquals(serial.height(), batch.height());
+            assertArrayEquals(serial.toArgb(), batch.toArgb());
+            for (int y = 0; y < batch.height(); y++) {
+                for (int x = 0; x < batch.width(); x++) {
+                    assertEquals(serial.energy(x, y), batch.energy(x, y), 0.0,
+                            "energy(" + x + ", " + y + ")");
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void reducedPrecisionModesFindTheSameSeams() {
+        Random random = new Random(SEED + 3);
+        int width = 2100;
+        int height = 12;
+        int[] argb = randomPicture(random, width, height);
+        
+        for (SeamCarver.Precision precision: new SeamCarver.Precision[] {
+                SeamCarver.Precision.FLOAT, SeamCarver.Precision.FIXED}) {
+            SeamCarver serial = new SeamCarver(argb, width, height);
+            serial.setPrecision(precision);
+            SeamCarver incremental = new SeamCarver(argb, width, height);
+            incremental.setPrecision(precision);
+            incremental.setIncremental(true);
+            SeamCarver parallel = new SeamCarver(argb, width, height);
+            parallel.setPrecision(precision);
+            parallel.setParallelism(2);
+            SeamCarver[] modes = {incremental, parallel};
+            
+            for (int step = 0; step < 20; step++) {
+                boolean vertical = step % 5 != 4;
+                int[] seam = vertical ? serial.findVerticalSeam()
+                                      : serial.findHorizontalSeam();
+                for (SeamCarver carver: modes) {
+                    int[] other = vertical ? carver.findVerticalSeam()
+                                           : carver.findHorizontalSeam();
+                    assertArrayEquals(seam, other, precision + " step " + step);
+                }
+                
+                if (vertical) serial.removeVerticalSeam(seam);
+                else serial.removeHorizontalSeam(seam);
+                for (SeamCarver carver: modes) {
+                    if (vertical) carver.removeVerticalSeam(seam);
+                    else carver.removeHorizontalSeam(seam);
+                }
+            }
+            parallel.setParallelism(1);
+        }
+    }
+    
+    @Test
+    public void reducedPrecisionEnergyFollowsTheCarving() {
+        Random random = new Random(SEED + 4);
+        int width = 64;
+        int height = 48;
+        int[] argb = randomPicture(random, width, height);
+        
+        // The narrow energy shifted and patched by each kind of removal and
+        // insertion must be the one a new carver rounds from scratch
+        for (SeamCarver.Precision precision: new SeamCarver.Precision[] {
+                SeamCarver.Precision.FLOAT, SeamCarver.Precision.FIXED}) {
+            SeamCarver carver = new SeamCarver(argb, width, height);
+            carver.setPrecision(precision);
+            carver.setIncremental(true);
+            for (int step = 0; step < 12; step++) {
+                switch (step % 4) {
+                    case 0: carver.removeVerticalSeam(carver.findVerticalSeam()); break;
+                    case 1: carver.removeHorizontalSeams(2); break;
+                    case 2: carver.insertVerticalSeams(1); break;
+                    default: carver.removeVerticalSeams(3); break;
+                }
+                
+                SeamCarver fresh = new SeamCarver(carver.toArgb(), carver.width(),
+                                                  carver.height());
+                fresh.setPrecision(precision);
+                assertArrayEquals(fresh.findVerticalSeam(), carver.findVerticalSeam(),
+                        precision + " step " + step);
+                assertArrayEquals(fresh.findHorizontalSeam(), carver.findHorizontalSeam(),
+                        precision + " step " + step);
+            }
+        }
+    }
+    
+    @Test
+    public void reducedPrecisionSeamsAreNearlyShortest() {
+        Random random = new Random(SEED + 5);
+        int width = 300;
+        int height = 200;
+        int[] argb = randomPicture(random, width, height);
+        
+        SeamCarver exact = new SeamCarver(argb, width, height);
+        double shortest = exact.verticalSeamCost(exact.findVerticalSeam());
+        
+        // A float sum of a few hundred energies is off by far less than a
+        // thousandth; a fixed-point one by at most 1/128 per pixel each way
+        SeamCarver narrow = new SeamCarver(argb, width, height);
+        narrow.setPrecision(SeamCarver.Precision.FLOAT);
+        double cost = narrow.verticalSeamCost(narrow.findVerticalSeam());
+        assertEquals(shortest, cost, shortest * 1e-3);
+        
+        narrow.setPrecision(SeamCarver.Precision.FIXED);
+        cost = narrow.verticalSeamCost(narrow.findVerticalSeam());
+        assertEquals(shortest, cost, height / 64.0);
+    }
+    
+    @Test
+    public void pyramidSearchesApproachTheShortestSeam() {
+        Random random = new Random(SEED + 6);
+        int width = 120;
+        int height = 90;
+        SeamCarver carver = new SeamCarver(randomPicture(random, width, height),
+                                           width, height);
+        
+        for (int step = 0; step < 10; step++) {
+            int[] vertical = carver.findVerticalSeam();
+            int[] horizontal = carver.findHorizontalSeam();
+            
+            // One level, or a band as wide as the picture, is a full search
+            assertArrayEquals(vertical, carver.findApproximateVerticalSeam(1, 1));
+            assertArrayEquals(horizontal, carver.findApproximateHorizontalSeam(1, 1));
+            assertArrayEquals(vertical,
+                    carver.findApproximateVerticalSeam(4, carver.width()));
+            assertArrayEquals(horizontal,
+                    carver.findApproximateHorizontalSeam(4, carver.height()));
+            
+            // A narrow band finds a valid seam no shorter than the shortest
+            int[] approximate = carver.findApproximateVerticalSeam(3, 2);
+            assertEquals(carver.height(), approximate.length);
+            for (int y = 1; y < approximate.length; y++) {
+                assertTrue(Math.abs(approximate[y] - approximate[y - 1]) <= 1);
+            }
+            assertTrue(carver.verticalSeamCost(approximate)
+                       >= carver.verticalSeamCost(vertical));
+            int[] across = carver.findApproximateHorizontalSeam(3, 2);
+            assertEquals(carver.width(), across.length);
+            assertTrue(carver.horizontalSeamCost(across)
+                       >= carver.horizontalSeamCost(horizontal));
+            
+            carver.removeVerticalSeam(approximate);
+            carver.removeHorizontalSeam(carver.findApproximateHorizontalSeam(3, 2));
+        }
+    }
+    
+    @Test
+    public void seamsFoundTogetherRemoveAsSingleSeamsDo() {
+        Random random = new Random(SEED + 7);
+        int width = 80;
+        int height = 60;
+        int[] argb = randomPicture(random, width, height);
+        
+        SeamCarver together = new SeamCarver(argb, width, height);
+        SeamCarver single = new SeamCarver(argb, width, height);
+        for (int round = 0; round < 6; round++) {
+            boolean vertical = round % 2 == 0;
+            int[] shortest = vertical ? together.findVerticalSeam()
+                                      : together.findHorizontalSeam();
+            int[][] seams = vertical ? together.findVerticalSeams(8)
+                                     : together.findHorizontalSeams(8);
+            assertEquals(8, seams.length);
+            assertArrayEquals(shortest, seams[0], "round " + round);
+            
+            // Remove the seams one at a time from the other carver, each
+            // moved past the ones removed before it; the seams share no
+            // pixel, so every one stays a valid seam
+            for (int t = 0; t < seams.length; t++) {
+                int[] seam = seams[t].clone();
+                for (int i = 0; i < seam.length; i++) {
+                    for (int u = 0; u < t; u++) {
+                        assertNotEquals(seams[u][i], seams[t][i], "shared pixel");
+                        if (seams[u][i] < seams[t][i]) seam[i]--;
+                    }
+                }
+                if (vertical) single.removeVerticalSeam(seam);
+                else single.removeHorizontalSeam(seam);
+            }
+            if (vertical) together.removeVerticalSeams(seams);
+            else together.removeHorizontalSeams(seams);
+            
+            assertEquals(single.width(), together.width());
+            assertEquals(single.height(), together.height());
+            assertArrayEquals(single.toArgb(), together.toArgb(), "round " + round);
+            for (int y = 0; y < together.height(); y++) {
+                for (int x = 0; x < together.width(); x++) {
+                    assertEquals(single.energy(x, y), together.energy(x, y), 0.0,
+                            "energy(" + x + ", " + y + ")");
+                }
+            }
+            assertArrayEquals(single.findVerticalSeam(), together.findVerticalSeam());
+        }
+        
+        int[] seam = together.findVerticalSeam();
+        assertThrows(IllegalArgumentException.class,
+                () -> together.removeVerticalSeams(new int[][] {seam, seam}));
+    }
+    
+    @Test
+    public void bandsCarveAsTheWholePictureDoes() {
+        Random random = new Random(SEED + 8);
+        int width = 200;
+        int height = 60;
+        int[] argb = randomPicture(random, width, height);
+        
+        SeamCarver serial = new SeamCarver(argb, width, height);
+        for (int k = 0; k < 30; k++) serial.removeVerticalSeam(serial.findVerticalSeam());
+        for (int k = 0; k < 10; k++) serial.removeHorizontalSeam(serial.findHorizontalSeam());
+        
+        // One band is a search of the whole picture, one seam a round
+        SeamCarver oneBand = new SeamCarver(argb, width, height);
+        oneBand.setParallelism(3);
+        oneBand.removeVerticalSeamsInBands(30, 1);
+        oneBand.removeHorizontalSeamsInBands(10, 1);
+        oneBand.setParallelism(1);
+        assertArrayEquals(serial.toArgb(), oneBand.toArgb());
+        
+        // Several bands carve the same way whatever the number of threads,
+        // and leave the energy a fresh carver calculates
+        SeamCarver bands = new SeamCarver(argb, width, height);
+        bands.removeVerticalSeamsInBands(30, 4);
+        bands.removeHorizontalSeamsInBands(10, 3);
+        SeamCarver parallel = new SeamCarver(argb, width, height);
+        parallel.setParallelism(4);
+        parallel.removeVerticalSeamsInBands(30, 4);
+        parallel.removeHorizontalSeamsInBands(10, 3);
+        parallel.setParallelism(1);
+        
+        assertEquals(serial.width(), bands.width());
+        assertEquals(serial.height(), bands.height());
+        assertArrayEquals(bands.toArgb(), parallel.toArgb());
+        SeamCarver fresh = new SeamCarver(bands.toArgb(), bands.width(), bands.height());
+        for (int y = 0; y < bands.height(); y++) {
+            for (int x = 0; x < bands.width(); x++) {
+                assertEquals(fresh.energy(x, y), bands.energy(x, y), 0.0,
+                        "energy(" + x + ", " + y + ")");
+            }
+        }
+    }
+    
+    @Test
+    public void insertionWidensAlongTheSeamsFound() {
+        Random random = new Random(SEED + 9);
+        int width = 60;
+        int height = 40;
+        int[] argb = randomPicture(random, width, height);
+        
+        for (int k: new int[] {1, 12}) {
+            SeamCarver carver = new SeamCarver(argb, width, height);
+            int[][] seams = carver.findVerticalSeams(k);
+            assertEquals(k, seams.length);
+            assertArrayEquals(carver.findVerticalSeam(), seams[0]);
+            carver.insertVerticalSeams(k);
+            
+            assertEquals(width + k, carver.width());
+            assertArrayEquals(widen(argb, width, seams), carver.toArgb(), "k " + k);
+            SeamCarver fresh = new SeamCarver(carver.toArgb(), carver.width(), height);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < carver.width(); x++) {
+                    assertEquals(fresh.energy(x, y), carver.energy(x, y), 0.0,
+                            "energy(" + x + ", " + y + ")");
+                }
+            }
+            assertArrayEquals(fresh.findVerticalSeam(), carver.findVerticalSeam());
+            
+            // Horizontal seams are vertical seams of the transposed picture
+            carver = new SeamCarver(argb, width, height);
+            seams = carver.findHorizontalSeams(k);
+            carver.insertHorizontalSeams(k);
+            assertEquals(height + k, carver.height());
+            assertArrayEquals(widen(transpose(argb, width), height, seams),
+                    transpose(carver.toArgb(), width), "k " + k);
+        }
+    }
+    
+    @Test
+    public void areaRejectsPicturesTooLargeForAnArray() {
+        assertEquals(6 * 5, SeamCarver.area(6, 5));
+        assertEquals(46340 * 46340, SeamCarver.area(46340, 46340));
+        assertThrows(IllegalArgumentException.class,
+                () -> SeamCarver.area(65536, 65536));
+        assertThrows(IllegalArgumentException.class,
+                () -> SeamCarver.area(Integer.MAX_VALUE, 2));
+    }
+    
+    @Test
+    public void exportKeepsAlpha() {
+        int[] argb = randomPicture(new Random(SEED + 2), 8, 6);
+        argb[13] = 0x803F7EBD;
+        BufferedImage image = new BufferedImage(8, 6, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 8, 6, argb, 0, 8);
+        
+        SeamCarver carver = new SeamCarver(image);
+        BufferedImage out = carver.toBufferedImage();
+        assertEquals(BufferedImage.TYPE_INT_ARGB, out.getType());
+        assertArrayEquals(argb, out.getRGB(0, 0, 8, 6, null, 0, 8));
+        assertEquals(BufferedImage.TYPE_INT_ARGB,
+                carver.snapshot().toBufferedImage().getType());
+        
+        argb[13] |= 0xFF000000;
+        carver = new SeamCarver(argb, 8, 6);
+        assertEquals(BufferedImage.TYPE_INT_RGB, carver.toBufferedImage().getType());
+    }
+}
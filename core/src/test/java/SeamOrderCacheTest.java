@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2026 The seam-carving contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the keys, the bound and the eviction order of the index cache.
+ * 
+ * @author The seam-carving contributors
+ */
+public class SeamOrderCacheTest {
+    
+    // The size of the pictures indexed; every index takes up 4 bytes a pixel
+    private static final int WIDTH = 12;
+    private static final int HEIGHT = 10;
+    private static final long BYTES = 4L * WIDTH * HEIGHT;
+    
+    // The id the indexes are cached under
+    private static final String ENERGY = DualGradientEnergy.class.getName();
+    
+    /**
+     * A vertical index of the given pixels.
+     * 
+     * @param argb the colors of the pixels, row by row
+     * @param minWidth the narrowest width the index can retarget to
+     * @return the index.
+     */
+    private static SeamOrderIndex index(int[] argb, int minWidth) {
+        return SeamOrderIndex.vertical(argb, WIDTH, HEIGHT, minWidth,
+                                       new DualGradientEnergy());
+    }
+    
+    @Test
+    public void contentHashTellsPicturesApart() {
+        Random random = new Random(2017);
+        int[] argb = SeamCarverTest.randomPicture(random, WIDTH, HEIGHT);
+        String hash = SeamOrderCache.contentHash(argb, WIDTH, HEIGHT);
+        
+        assertEquals(hash, SeamOrderCache.contentHash(argb.clone(), WIDTH, HEIGHT));
+        assertNotEquals(hash, SeamOrderCache.contentHash(argb, HEIGHT, WIDTH));
+        argb[7] ^= 1;
+        assertNotEquals(hash, SeamOrderCache.contentHash(argb, WIDTH, HEIGHT));
+    }
+    
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        Random random = new Random(2018);
+        SeamOrderCache cache = new SeamOrderCache(2 * BYTES);
+        
+        String[] hashes = new String[3];
+        SeamOrderIndex[] indexes = new SeamOrderIndex[3];
+        for (int n = 0; n < 3; n++) {
+            int[] argb = SeamCarverTest.randomPicture(random, WIDTH, HEIGHT);
+            hashes[n] = SeamOrderCache.contentHash(argb, WIDTH, HEIGHT);
+            indexes[n] = index(argb, 4);
+        }
+        
+        cache.put(hashes[0], indexes[0]);
+        cache.put(hashes[1], indexes[1]);
+        assertEquals(2, cache.size());
+        assertEquals(2 * BYTES, cache.bytes());
+        
+        // Using the first makes the second the one to go
+        assertSame(indexes[0], cache.get(hashes[0], true, ENERGY, 4));
+        cache.put(hashes[2], indexes[2]);
+        assertEquals(2, cache.size());
+        assertEquals(2 * BYTES, cache.bytes());
+        assertSame(indexes[0], cache.get(hashes[0], true, ENERGY, 4));
+        assertNull(cache.get(hashes[1], true, ENERGY, 4));
+        assertSame(indexes[2], cache.get(hashes[2], true, ENERGY, 4));
+        
+        // An index larger than the whole bound is not cached
+        SeamOrderCache small = new SeamOrderCache(BYTES - 1);
+        small.put(hashes[0], indexes[0]);
+        assertEquals(0, small.size());
+        assertEquals(0, small.bytes());
+    }
+    
+    @Test
+    public void keysTellIndexesApart() {
+        int[] argb = SeamCarverTest.randomPicture(new Random(2019), WIDTH, HEIGHT);
+        String hash = SeamOrderCache.contentHash(argb, WIDTH, HEIGHT);
+        SeamOrderCache cache = new SeamOrderCache(10 * BYTES);
+        
+        SeamOrderIndex narrow = index(argb, 2);
+        SeamOrderIndex wide = index(argb, 6);
+        SeamOrderIndex horizontal = SeamOrderIndex.horizontal(argb, WIDTH, HEIGHT,
+                2, new DualGradientEnergy());
+        SeamOrderIndex sobel = SeamOrderIndex.vertical(argb, WIDTH, HEIGHT, 2,
+                new SobelEnergy());
+        cache.put(hash, narrow);
+        cache.put(hash, wide);
+        cache.put(hash, horizontal);
+        cache.put(hash, sobel);
+        assertEquals(4, cache.size());
+        assertSame(narrow, cache.get(hash, true, ENERGY, 2));
+        assertSame(wide, cache.get(hash, true, ENERGY, 6));
+        assertSame(horizontal, cache.get(hash, false, ENERGY, 2));
+        assertSame(sobel, cache.get(hash, true, SobelEnergy.class.getName(), 2));
+        
+        // The same key replaces the index, without counting it twice
+        SeamOrderIndex again = index(argb, 2);
+        cache.put(hash, again);
+        assertEquals(4, cache.size());
+        assertEquals(4 * BYTES, cache.bytes());
+        assertSame(again, cache.get(hash, true, ENERGY, 2));
+        
+        assertSame(wide, cache.remove(hash, true, ENERGY, 6));
+        assertNull(cache.remove(hash, true, ENERGY, 6));
+        assertEquals(3 * BYTES, cache.bytes());
+        
+        String other = SeamOrderCache.contentHash(argb, HEIGHT, WIDTH);
+        cache.put(other, narrow);
+        assertEquals(3, cache.removeAll(hash));
+        assertEquals(1, cache.size());
+        assertEquals(BYTES, cache.bytes());
+        assertSame(narrow, cache.get(other, true, ENERGY, 2));
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2026 The seam-carving contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that an index retargets a picture exactly as carving it seam by
+ * seam does, and that it survives being written and mapped back.
+ * 
+ * @author The seam-carving contributors
+ */
+public class SeamOrderIndexTest {
+    
+    // The size of the random picture the indexes are built from
+    private static final int WIDTH = 40;
+    private static final int HEIGHT = 30;
+    
+    @TempDir
+    Path directory;
+    
+    /**
+     * The pixels of a picture carved down to the given size by finding and
+     * removing one seam after another.
+     * 
+     * @param argb the colors of the pixels, row by row
+     * @param vertical whether to remove vertical seams
+     * @param size the width, or height, to carve down to
+     * @return the colors of the carved picture, row by row.
+     */
+    private static int[] carve(int[] argb, boolean vertical, int size) {
+        SeamCarver carver = new SeamCarver(argb, WIDTH, HEIGHT);
+        while ((vertical ? carver.width() : carver.height()) > size) {
+            if (vertical) carver.removeVerticalSeam(carver.findVerticalSeam());
+            else carver.removeHorizontalSeam(carver.findHorizontalSeam());
+        }
+        return carver.toArgb();
+    }
+    
+    @Test
+    public void retargetsAsCarvingDoes() {
+        int[] argb = SeamCarverTest.randomPicture(new Random(2017), WIDTH, HEIGHT);
+        
+        SeamOrderIndex vertical = SeamOrderIndex.vertical(argb, WIDTH, HEIGHT,
+                5, new DualGradientEnergy());
+        assertEquals(5, vertical.minSize());
+        for (int size = 5; size <= WIDTH; size++) {
+            assertArrayEquals(carve(argb, true, size), vertical.retarget(argb, size),
+                    "width " + size);
+        }
+        
+        SeamOrderIndex horizontal = SeamOrderIndex.horizontal(argb, WIDTH, HEIGHT,
+                3, new DualGradientEnergy());
+        assertEquals(3, horizontal.minSize());
+        for (int size = 3; size <= HEIGHT; size++) {
+            assertArrayEquals(carve(argb, false, size), horizontal.retarget(argb, size),
+                    "height " + size);
+        }
+        
+        assertThrows(IllegalArgumentException.class, () -> vertical.retarget(argb, 4));
+        assertThrows(IllegalArgumentException.class,
+                () -> vertical.retarget(argb, WIDTH + 1));
+    }
+    
+    @Test
+    public void retargetsImages() {
+        int[] argb = SeamCarverTest.randomPicture(new Random(2018), WIDTH, HEIGHT);
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, WIDTH, HEIGHT, argb, 0, WIDTH);
+        
+        SeamOrderIndex index = SeamOrderIndex.horizontal(argb, WIDTH, HEIGHT,
+                10, new DualGradientEnergy());
+        BufferedImage out = index.retarget(image, 20);
+        assertEquals(WIDTH, out.getWidth());
+        assertEquals(20, out.getHeight());
+        assertArrayEquals(carve(argb, false, 20),
+                out.getRGB(0, 0, WIDTH, 20, null, 0, WIDTH));
+    }
+    
+    @Test
+    public void writesAndMapsBack() throws IOException {
+        int[] argb = SeamCarverTest.randomPicture(new Random(2019), WIDTH, HEIGHT);
+        SeamOrderIndex index = SeamOrderIndex.vertical(argb, WIDTH, HEIGHT,
+                8, new SobelEnergy());
+        Path file = SeamOrderIndex.sidecar(directory.resolve("picture.png"));
+        index.write(file);
+        
+        SeamOrderIndex mapped = SeamOrderIndex.map(file);
+        assertEquals(WIDTH, mapped.width());
+        assertEquals(HEIGHT, mapped.height());
+        assertTrue(mapped.isVertical());
+        assertEquals(8, mapped.minSize());
+        assertEquals(SobelEnergy.class.getName(), mapped.energyId());
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(index.rank(x, y), mapped.rank(x, y));
+            }
+        }
+        for (int size = 8; size <= WIDTH; size += 8) {
+            assertArrayEquals(index.retarget(argb, size), mapped.retarget(argb, size));
+        }
+    }
+    
+    @Test
+    public void mapRejectsDamagedFiles() throws IOException {
+        int[] argb = SeamCarverTest.randomPicture(new Random(2020), WIDTH, HEIGHT);
+        Path file = directory.resolve("picture.png.seams");
+        SeamOrderIndex.vertical(argb, WIDTH, HEIGHT, 8, new DualGradientEnergy())
+                      .write(file);
+        
+        // Change the last step, which only the checksum covers
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x7F}), channel.size() - 1);
+        }
+        assertThrows(IOException.class, () -> SeamOrderIndex.map(file));
+        assertEquals(WIDTH, SeamOrderIndex.map(file, false).width());
+        
+        Files.write(file, new byte[] {'P', 'N', 'G', 0, 0, 0, 0, 0});
+        assertThrows(IOException.class, () -> SeamOrderIndex.map(file));
+    }
+}